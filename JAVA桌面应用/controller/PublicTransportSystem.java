@@ -26,6 +26,7 @@ public class PublicTransportSystem extends JFrame {
         graph = new TransportGraph();
         graph.initData(); // 加载 routes.txt
         service = new NavigationService(graph);
+        service.setRoutesFile("routes.txt");
     }
     
     private void initUI() {
@@ -75,6 +76,11 @@ public class PublicTransportSystem extends JFrame {
         
         if (confirm == JOptionPane.YES_OPTION) {
             graph.saveToFile("routes.txt");
+            // 数据自上次保存以来未变时不会重复重建；失败时提示管理员
+            service.rebuildPreprocessing().whenComplete((v, ex) -> {
+                if (ex != null) SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                        "预处理数据更新失败: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+            });
         }
         
         // 关键：重新加载 UserPanel 以获取最新的地图数据
@@ -0,0 +1,263 @@
+package model;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 交通图的只读编译快照：站点、线路按整数稠密编号，边以 CSR (压缩稀疏行) 数组存储。
+ * 路径搜索只在这些基本类型数组上运行，不再对站名做哈希，也不装箱整数。
+ */
+public final class CompiledGraph {
+    // 站点编号顺序 (见 StationOrder，由 TransportGraph.setStationOrder 按图设置)
+    public static final int ORDER_INSERTION = 0; // 邻接表 (HashMap) 迭代顺序
+    public static final int ORDER_HILBERT = 1;   // 按坐标的 Hilbert 曲线，无坐标的站点跟随相邻站点
+    public static final int ORDER_BFS = 2;       // 沿线路 BFS
+
+    // 编译时对应的图版本号与结构版本号
+    public final long version;
+    public final long structureVersion;
+    // 编译时使用的站点编号顺序 (ORDER_*)
+    public final int stationOrder;
+
+    // 站点编号 <-> 站名
+    public final String[] stationNames;
+    private final Map<String, Integer> stationIndex;
+    // 线路编号 <-> 线路名
+    public final String[] lineNames;
+    private final Map<String, Integer> lineIndex;
+    // 线路的交通方式 (TransportMode 位)
+    public final byte[] lineModes;
+    // 线路的有序停靠站 (来自线路表，仅含仍存在的站点)
+    public final int[][] lineStops;
+    // 线路首末班发车时间 (当日分钟数；末班早于首班时视为次日)
+    public final int[] firstDeparture;
+    public final int[] lastDeparture;
+    // 站点坐标，缺失 (或为未设置的 0,0) 时为 NaN
+    public final double[] coordX;
+    public final double[] coordY;
+
+    // CSR：站点 v 的出边为 [offsets[v], offsets[v+1])
+    public final int[] offsets;
+    public final int[] targets;
+    public final int[] lineIds;
+    public final int[] costs;
+    // 每条边所属线路的交通方式，按方式筛选时与掩码按位与即可
+    public final byte[] edgeModes;
+
+    // 由快照派生的结构 (状态图、权重表等)，与快照同生命周期
+    private final Map<Object, Object> derived = new HashMap<>();
+
+    private CompiledGraph(long version, long structureVersion, int stationOrder, String[] stationNames, Map<String, Integer> stationIndex,
+                          String[] lineNames, Map<String, Integer> lineIndex, byte[] lineModes,
+                          int[][] lineStops, int[] firstDeparture, int[] lastDeparture, double[] coordX, double[] coordY, int[] offsets, int[] targets, int[] lineIds, int[] costs, byte[] edgeModes) {
+        this.version = version;
+        this.structureVersion = structureVersion;
+        this.stationOrder = stationOrder;
+        this.stationNames = stationNames;
+        this.stationIndex = stationIndex;
+        this.lineNames = lineNames;
+        this.lineIndex = lineIndex;
+        this.lineModes = lineModes;
+        this.lineStops = lineStops;
+        this.firstDeparture = firstDeparture;
+        this.lastDeparture = lastDeparture;
+        this.coordX = coordX;
+        this.coordY = coordY;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.lineIds = lineIds;
+        this.costs = costs;
+        this.edgeModes = edgeModes;
+    }
+
+    public int stationCount() { return stationNames.length; }
+    public int lineCount() { return lineNames.length; }
+    public int edgeCount() { return targets.length; }
+
+    public boolean hasCoord(int v) { return !Double.isNaN(coordX[v]); }
+
+    /** 站名 -> 编号，不存在时返回 -1 */
+    public int stationId(String station) {
+        Integer id = stationIndex.get(station);
+        return id == null ? -1 : id;
+    }
+
+    /** 线路名 -> 编号，不存在时返回 -1 */
+    public int lineId(String lineName) {
+        Integer id = lineIndex.get(lineName);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * 拓扑与权重的指纹 (站名顺序 + 边数组)，用于校验持久化的预处理文件是否仍然有效
+     */
+    public long fingerprint() {
+        return derived("fingerprint", cg -> {
+            long h = 0xcbf29ce484222325L;
+            for (String name : stationNames) h = (h ^ name.hashCode()) * 0x100000001b3L;
+            for (String name : lineNames) h = (h ^ name.hashCode()) * 0x100000001b3L;
+            for (int x : offsets) h = (h ^ x) * 0x100000001b3L;
+            for (int x : targets) h = (h ^ x) * 0x100000001b3L;
+            for (int x : lineIds) h = (h ^ x) * 0x100000001b3L;
+            for (int x : costs) h = (h ^ x) * 0x100000001b3L;
+            for (byte x : lineModes) h = (h ^ x) * 0x100000001b3L;
+            return h;
+        });
+    }
+
+    /**
+     * 获取 (必要时构建) 由本快照派生的结构；同一 key 只保留一份
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T derived(Object key, Function<CompiledGraph, T> factory) {
+        synchronized (derived) {
+            Object value = derived.get(key);
+            if (value != null) return (T) value;
+        }
+        T value = factory.apply(this);
+        synchronized (derived) {
+            Object prev = derived.putIfAbsent(key, value);
+            return prev != null ? (T) prev : value;
+        }
+    }
+
+    /** (站点, 线路) 状态图 */
+    public LineStateGraph lineStates() {
+        return derived(LineStateGraph.class, LineStateGraph::build);
+    }
+
+    /** 按线路方向展开的时刻表模式 */
+    public Timetable timetable() {
+        return derived(Timetable.class, Timetable::build);
+    }
+
+    /** 按发车间隔 headway (分钟) 展开的、按出发时刻排序的连接表 */
+    public ConnectionTable connections(int headway) {
+        return derived("connections:" + headway, cg -> ConnectionTable.build(cg.timetable(), headway));
+    }
+
+    /**
+     * "HH:mm" -> 当日分钟数，格式错误时返回 fallback
+     */
+    public static int parseTime(String text, int fallback) {
+        if (text == null) return fallback;
+        String[] parts = text.trim().split(":");
+        if (parts.length != 2) return fallback;
+        try {
+            int h = Integer.parseInt(parts[0]), m = Integer.parseInt(parts[1]);
+            return h >= 0 && m >= 0 && m < 60 ? h * 60 + m : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /** 分钟数 -> "HH:mm"，超过 24 点的时间按次日显示 */
+    public static String formatTime(int minutes) {
+        return String.format("%02d:%02d", (minutes / 60) % 24, minutes % 60);
+    }
+
+    /**
+     * 根据当前邻接表编译快照
+     */
+    public static CompiledGraph compile(TransportGraph graph, long version, long structureVersion) {
+        // 1. 站点编号 (邻接表中的全部站点)，按局部性重新排列，使相邻站点的数据在内存中相邻
+        int order = graph.getStationOrder();
+        String[] stationNames = StationOrder.arrange(graph.adjList.keySet().toArray(new String[0]), graph, order);
+        int n = stationNames.length;
+        Map<String, Integer> stationIndex = new HashMap<>(n * 2);
+        for (int v = 0; v < n; v++) stationIndex.put(stationNames[v], v);
+
+        // 坐标 (0,0) 视为尚未设置
+        double[] coordX = new double[n];
+        double[] coordY = new double[n];
+        for (int v = 0; v < n; v++) {
+            GeoCoordinate c = graph.stationCoords.get(stationNames[v]);
+            boolean known = c != null && (c.longitude != 0 || c.latitude != 0);
+            coordX[v] = known ? c.longitude : Double.NaN;
+            coordY[v] = known ? c.latitude : Double.NaN;
+        }
+
+        // 字典编号 -> 快照编号 (连接中存的是字典编号)
+        StationLineIndex dict = graph.index;
+        int[] stationOf = new int[dict.stations.capacity()];
+        Arrays.fill(stationOf, -1);
+        for (int v = 0; v < n; v++) {
+            int id = dict.stations.id(stationNames[v]);
+            if (id >= 0) stationOf[id] = v;
+        }
+
+        // 2. 线路编号 (线路表 + 边上出现的线路名)
+        List<String> lines = new ArrayList<>(graph.lineStationsMap.keySet());
+        Map<String, Integer> lineIndex = new HashMap<>(lines.size() * 2);
+        for (String line : lines) lineIndex.put(line, lineIndex.size());
+        int[] lineOf = new int[dict.lines.capacity()];
+        Arrays.fill(lineOf, -1);
+        for (String line : lines) {
+            int id = dict.lines.id(line);
+            if (id >= 0) lineOf[id] = lineIndex.get(line);
+        }
+
+        // 3. 统计出度，生成 offsets (忽略指向已删除站点的悬空边)
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            int degree = 0;
+            for (Connection c : graph.adjList.get(stationNames[v])) {
+                if (stationOf[c.to] >= 0) degree++;
+            }
+            offsets[v + 1] = offsets[v] + degree;
+        }
+
+        // 4. 填充边数组
+        int m = offsets[n];
+        int[] targets = new int[m];
+        int[] lineIds = new int[m];
+        int[] costs = new int[m];
+        int e = 0;
+        for (int v = 0; v < n; v++) {
+            for (Connection c : graph.adjList.get(stationNames[v])) {
+                int to = stationOf[c.to];
+                if (to < 0) continue;
+                int line = lineOf[c.line];
+                if (line < 0) {
+                    line = lineIndex.size();
+                    lineOf[c.line] = line;
+                    String name = graph.lineName(c.line);
+                    lineIndex.put(name, line);
+                    lines.add(name);
+                }
+                targets[e] = to;
+                lineIds[e] = line;
+                costs[e] = c.timeCost;
+                e++;
+            }
+        }
+
+        String[] lineNames = lines.toArray(new String[0]);
+        byte[] lineModes = new byte[lineNames.length];
+        for (int i = 0; i < lineNames.length; i++) lineModes[i] = (byte) dict.mode(lineNames[i]);
+        byte[] edgeModes = new byte[m];
+        for (int i = 0; i < m; i++) edgeModes[i] = lineModes[lineIds[i]];
+
+        // 5. 线路停靠站与首末班 (缺省与保存文件时一致：06:00-22:00)
+        int[][] lineStops = new int[lineNames.length][];
+        int[] firstDeparture = new int[lineNames.length];
+        int[] lastDeparture = new int[lineNames.length];
+        for (int i = 0; i < lineNames.length; i++) {
+            List<String> stops = graph.lineStationsMap.getOrDefault(lineNames[i], Collections.emptyList());
+            int[] ids = new int[stops.size()];
+            int count = 0;
+            for (String stop : stops) {
+                Integer id = stationIndex.get(stop);
+                if (id != null) ids[count++] = id;
+            }
+            lineStops[i] = Arrays.copyOf(ids, count);
+            LineInfo info = graph.lineMetaMap.get(lineNames[i]);
+            firstDeparture[i] = parseTime(info != null ? info.firstTime : null, 6 * 60);
+            lastDeparture[i] = parseTime(info != null ? info.lastTime : null, 22 * 60);
+            if (lastDeparture[i] < firstDeparture[i]) lastDeparture[i] += 24 * 60;
+        }
+
+        return new CompiledGraph(version, structureVersion, order, stationNames, stationIndex, lineNames, lineIndex, lineModes,
+                lineStops, firstDeparture, lastDeparture, coordX, coordY, offsets, targets, lineIds, costs, edgeModes);
+    }
+}
@@ -2,16 +2,20 @@ package model;
 
 import java.io.Serializable;
 
+/**
+ * 有向连接：起终点与线路以字典编号存储 (见 {@link TransportGraph#index})，
+ * 名称由 {@link TransportGraph#stationName} / {@link TransportGraph#lineName} 还原，改名时无需修改连接
+ */
 public class Connection implements Serializable {
-    public String fromStation;
-    public String toStation;
-    public String lineName;
+    public final int from;
+    public final int to;
+    public final int line;
     public int timeCost;
 
-    public Connection(String from, String to, String line, int time) {
-        this.fromStation = from;
-        this.toStation = to;
-        this.lineName = line;
+    public Connection(int from, int to, int line, int time) {
+        this.from = from;
+        this.to = to;
+        this.line = line;
         this.timeCost = time;
     }
-}
\ No newline at end of file
+}
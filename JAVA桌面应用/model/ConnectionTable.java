@@ -0,0 +1,105 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * 由 {@link Timetable} 按固定发车间隔展开的基本连接表：每个班次经过的每个区间是一条连接
+ * (出发站, 到达站, 出发时刻, 到达时刻, 班次)，全部连接按出发时刻排序后存放在并列的基本类型数组中，
+ * 供连接扫描算法 (CSA) 一次线性扫描使用。
+ */
+public final class ConnectionTable {
+    public final Timetable timetable;
+    public final int headway;
+
+    // 第 c 条连接 (按出发时刻升序)
+    public final int[] depStop;
+    public final int[] arrStop;
+    public final int[] depTime;
+    public final int[] arrTime;
+    public final int[] trip;
+    // 出发站在 Timetable 模式数组中的下标，用于还原沿途站点
+    public final int[] position;
+
+    // 班次 -> 所属模式
+    public final int[] tripPattern;
+
+    private ConnectionTable(Timetable timetable, int headway, int[] depStop, int[] arrStop, int[] depTime,
+                            int[] arrTime, int[] trip, int[] position, int[] tripPattern) {
+        this.timetable = timetable;
+        this.headway = headway;
+        this.depStop = depStop;
+        this.arrStop = arrStop;
+        this.depTime = depTime;
+        this.arrTime = arrTime;
+        this.trip = trip;
+        this.position = position;
+        this.tripPattern = tripPattern;
+    }
+
+    public int size() { return depTime.length; }
+    public int tripCount() { return tripPattern.length; }
+
+    /** 第一条出发时刻不早于 time 的连接 */
+    public int firstDepartingAt(int time) {
+        int lo = 0, hi = depTime.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (depTime[mid] < time) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * 按发车间隔展开全部班次
+     */
+    public static ConnectionTable build(Timetable tt, int headway) {
+        CompiledGraph g = tt.base;
+        int patterns = tt.patternCount();
+
+        // 1. 每个模式的班次数与连接总数
+        int[] tripOffsets = new int[patterns + 1];
+        long total = 0;
+        for (int p = 0; p < patterns; p++) {
+            int line = tt.patternLine[p];
+            int trips = (g.lastDeparture[line] - g.firstDeparture[line]) / headway + 1;
+            tripOffsets[p + 1] = tripOffsets[p] + trips;
+            total += (long) trips * (tt.patternOffsets[p + 1] - tt.patternOffsets[p] - 1);
+        }
+        int m = (int) total;
+        int[] tripPattern = new int[tripOffsets[patterns]];
+
+        // 2. 以 (出发时刻, 展开顺序) 为键排序：高 32 位为时刻，低 32 位为原始序号
+        long[] order = new long[m];
+        int[] rawTrip = new int[m];
+        int[] rawPosition = new int[m];
+        int c = 0;
+        for (int p = 0; p < patterns; p++) {
+            for (int t = tripOffsets[p]; t < tripOffsets[p + 1]; t++) {
+                tripPattern[t] = p;
+                int start = tt.tripStart(p, t - tripOffsets[p], headway);
+                for (int i = tt.patternOffsets[p]; i < tt.patternOffsets[p + 1] - 1; i++) {
+                    order[c] = ((long) (start + tt.patternTimes[i]) << 32) | c;
+                    rawTrip[c] = t;
+                    rawPosition[c++] = i;
+                }
+            }
+        }
+        Arrays.sort(order);
+
+        // 3. 按排序结果填充并列数组
+        int[] depStop = new int[m], arrStop = new int[m], depTime = new int[m], arrTime = new int[m];
+        int[] trip = new int[m], position = new int[m];
+        for (int k = 0; k < m; k++) {
+            int raw = (int) order[k];
+            int i = rawPosition[raw];
+            depTime[k] = (int) (order[k] >>> 32);
+            arrTime[k] = depTime[k] + tt.patternTimes[i + 1] - tt.patternTimes[i];
+            depStop[k] = tt.patternStops[i];
+            arrStop[k] = tt.patternStops[i + 1];
+            trip[k] = rawTrip[raw];
+            position[k] = i;
+        }
+        return new ConnectionTable(tt, headway, depStop, arrStop, depTime, arrTime, trip, position, tripPattern);
+    }
+}
@@ -6,10 +6,17 @@ public class LineInfo implements Serializable {
     public String lineName;
     public String firstTime;
     public String lastTime;
+    // 交通方式 (见 TransportMode)
+    public int mode;
 
     public LineInfo(String lineName, String firstTime, String lastTime) {
+        this(lineName, firstTime, lastTime, TransportMode.infer(lineName));
+    }
+
+    public LineInfo(String lineName, String firstTime, String lastTime, int mode) {
         this.lineName = lineName;
         this.firstTime = firstTime;
         this.lastTime = lastTime;
+        this.mode = mode;
     }
 }
\ No newline at end of file
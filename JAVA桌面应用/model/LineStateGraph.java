@@ -0,0 +1,156 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * 以 (站点, 线路) 为状态的乘车状态图，由 {@link CompiledGraph} 派生。
+ * 同一站点不同线路之间通过站内换乘边相连，换乘罚时因此被精确建模；
+ * 状态按站点连续编号，站点 v 的状态为 [stationStates[v], stationStates[v+1])。
+ */
+public final class LineStateGraph {
+    // 换乘边在 times 中的标记
+    public static final int TRANSFER_EDGE = -1;
+
+    public final CompiledGraph base;
+
+    // 站点 -> 状态区间
+    public final int[] stationStates;
+    // 状态 -> 站点、线路
+    public final int[] stateStation;
+    public final int[] stateLine;
+
+    // CSR：状态 s 的出边为 [offsets[s], offsets[s+1])
+    public final int[] offsets;
+    public final int[] targets;
+    // 乘车边为区间耗时；换乘边为 TRANSFER_EDGE
+    public final int[] times;
+
+    // 反向 CSR：状态 s 的入边为 [inOffsets[s], inOffsets[s+1])，
+    // inSources 为入边起点，inEdges 为对应的正向边编号 (用于查权重)
+    public final int[] inOffsets;
+    public final int[] inSources;
+    public final int[] inEdges;
+
+    private LineStateGraph(CompiledGraph base, int[] stationStates, int[] stateStation, int[] stateLine,
+                           int[] offsets, int[] targets, int[] times) {
+        this.base = base;
+        this.stationStates = stationStates;
+        this.stateStation = stateStation;
+        this.stateLine = stateLine;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.times = times;
+
+        if (targets == null) {
+            inOffsets = inSources = inEdges = null;
+            return;
+        }
+        int states = stateStation.length;
+        inOffsets = new int[states + 1];
+        for (int t : targets) inOffsets[t + 1]++;
+        for (int s = 0; s < states; s++) inOffsets[s + 1] += inOffsets[s];
+        inSources = new int[targets.length];
+        inEdges = new int[targets.length];
+        int[] fill = Arrays.copyOf(inOffsets, states);
+        for (int s = 0; s < states; s++) {
+            for (int e = offsets[s]; e < offsets[s + 1]; e++) {
+                int slot = fill[targets[e]]++;
+                inSources[slot] = s;
+                inEdges[slot] = e;
+            }
+        }
+    }
+
+    public int stateCount() { return stateStation.length; }
+    public int edgeCount() { return targets.length; }
+
+    public boolean isTransfer(int edge) { return times[edge] == TRANSFER_EDGE; }
+
+    /** 站点 v 在线路 line 上的状态，不存在时返回 -1 */
+    public int state(int v, int line) {
+        int lo = stationStates[v], hi = stationStates[v + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int l = stateLine[mid];
+            if (l < line) lo = mid + 1;
+            else if (l > line) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * 从编译快照构建状态图
+     */
+    public static LineStateGraph build(CompiledGraph g) {
+        int n = g.stationCount();
+
+        // 1. 每个站点经过的线路 (出边与入边的线路并集，按线路编号排序)
+        int[][] linesAt = new int[n][];
+        int[] count = new int[n];
+        for (int v = 0; v < n; v++) linesAt[v] = new int[4];
+        for (int v = 0; v < n; v++) {
+            for (int e = g.offsets[v]; e < g.offsets[v + 1]; e++) {
+                int line = g.lineIds[e];
+                addLine(linesAt, count, v, line);
+                addLine(linesAt, count, g.targets[e], line);
+            }
+        }
+
+        int[] stationStates = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            Arrays.sort(linesAt[v], 0, count[v]);
+            stationStates[v + 1] = stationStates[v] + count[v];
+        }
+        int states = stationStates[n];
+        int[] stateStation = new int[states];
+        int[] stateLine = new int[states];
+        for (int v = 0; v < n; v++) {
+            for (int i = 0; i < count[v]; i++) {
+                stateStation[stationStates[v] + i] = v;
+                stateLine[stationStates[v] + i] = linesAt[v][i];
+            }
+        }
+        LineStateGraph shell = new LineStateGraph(g, stationStates, stateStation, stateLine, null, null, null);
+
+        // 2. 出度：乘车边 + 站内换乘边 (同站其它线路)
+        int[] offsets = new int[states + 1];
+        for (int v = 0; v < n; v++) {
+            for (int e = g.offsets[v]; e < g.offsets[v + 1]; e++) {
+                if (g.targets[e] != v) offsets[shell.state(v, g.lineIds[e]) + 1]++;
+            }
+            for (int s = stationStates[v]; s < stationStates[v + 1]; s++) offsets[s + 1] += count[v] - 1;
+        }
+        for (int s = 0; s < states; s++) offsets[s + 1] += offsets[s];
+
+        // 3. 填充边
+        int[] targets = new int[offsets[states]];
+        int[] times = new int[offsets[states]];
+        int[] fill = Arrays.copyOf(offsets, states);
+        for (int v = 0; v < n; v++) {
+            for (int e = g.offsets[v]; e < g.offsets[v + 1]; e++) {
+                int to = g.targets[e];
+                if (to == v) continue; // 单站线路的自环
+                int line = g.lineIds[e];
+                int s = shell.state(v, line);
+                targets[fill[s]] = shell.state(to, line);
+                times[fill[s]++] = g.costs[e];
+            }
+            for (int s = stationStates[v]; s < stationStates[v + 1]; s++) {
+                for (int t = stationStates[v]; t < stationStates[v + 1]; t++) {
+                    if (s == t) continue;
+                    targets[fill[s]] = t;
+                    times[fill[s]++] = TRANSFER_EDGE;
+                }
+            }
+        }
+        return new LineStateGraph(g, stationStates, stateStation, stateLine, offsets, targets, times);
+    }
+
+    private static void addLine(int[][] linesAt, int[] count, int v, int line) {
+        int[] lines = linesAt[v];
+        for (int i = 0; i < count[v]; i++) if (lines[i] == line) return;
+        if (count[v] == lines.length) linesAt[v] = lines = Arrays.copyOf(lines, lines.length * 2);
+        lines[count[v]++] = line;
+    }
+}
@@ -0,0 +1,21 @@
+package model;
+
+/**
+ * 批量查询中的一条起终点请求
+ */
+public class RouteQuery {
+    public final String start;
+    public final String end;
+    public final int strategy;
+
+    public RouteQuery(String start, String end, int strategy) {
+        this.start = start;
+        this.end = end;
+        this.strategy = strategy;
+    }
+
+    @Override
+    public String toString() {
+        return start + " → " + end + " (策略 " + strategy + ")";
+    }
+}
@@ -1,5 +1,6 @@
 package model;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class RouteResult {
@@ -9,6 +10,9 @@ public class RouteResult {
     public int transferCount;
     public String strategyName;
     public List<String> transferPoints;
+    // 按时刻表查询时的出发、到达时间 (当日分钟数)，其它查询为 -1
+    public int departureTime = -1;
+    public int arrivalTime = -1;
 
     public RouteResult(List<String> stations, List<String> lineSegments, int totalTime, 
                       int transferCount, String strategyName, List<String> transferPoints) {
@@ -20,6 +24,15 @@ public class RouteResult {
         this.transferPoints = transferPoints;
     }
     
+    /** 副本 (列表各自独立)，缓存据此返回互不影响的结果 */
+    public RouteResult copy() {
+        RouteResult r = new RouteResult(new ArrayList<>(stations), new ArrayList<>(lineSegments), totalTime,
+                transferCount, strategyName, new ArrayList<>(transferPoints));
+        r.departureTime = departureTime;
+        r.arrivalTime = arrivalTime;
+        return r;
+    }
+
     @Override
     public String toString() {
         return String.format("<html><b>[%s]</b><br>路线: %s<br>总耗时: %d分钟 | 换乘: %d次</html>", 
@@ -31,6 +44,10 @@ public class RouteResult {
         sb.append("   路线: ").append(String.join(" → ", stations)).append("\n");
         sb.append("   预估耗时: ").append(totalTime).append("分钟\n");
         sb.append("   换乘次数: ").append(transferCount).append("次\n");
+        if (arrivalTime >= 0) {
+            sb.append("   出发/到达: ").append(CompiledGraph.formatTime(departureTime)).append(" → ")
+              .append(CompiledGraph.formatTime(arrivalTime)).append("\n");
+        }
         
         // 显示首末班车信息
         if (!lineSegments.isEmpty()) {
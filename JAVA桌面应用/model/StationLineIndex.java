@@ -0,0 +1,183 @@
+package model;
+
+import java.util.*;
+
+/**
+ * 站点 -> (线路, 站序) 的倒排索引，以及每条线路的站点位图、每个站点的线路位图。
+ * 由 {@link TransportGraph} 的各个修改方法同步维护，
+ * "两站共有哪些线路"只需一次位图求交，"站点在某线上的前后站"无需遍历全部线路。
+ */
+public final class StationLineIndex {
+    public final SymbolTable stations = new SymbolTable();
+    public final SymbolTable lines = new SymbolTable();
+
+    // 线路编号 -> 有序站点编号 / 站点位图，线路不存在时为 null
+    private int[][] lineOrder = new int[16][];
+    private BitSet[] lineStations = new BitSet[16];
+    // 线路编号 -> 交通方式 (TransportMode 位)
+    private byte[] lineModes = new byte[16];
+    // 站点编号 -> 所在线路位图
+    private BitSet[] stationLines = new BitSet[16];
+    // 站点编号 -> 所在线路的 (线路编号 << 32 | 站序)
+    private long[][] stationEntries = new long[16][];
+
+    // ========== 维护 ==========
+
+    /** 登记站点 (可尚未属于任何线路) */
+    public void addStation(String station) {
+        ensureStation(stations.intern(station));
+    }
+
+    /** 登记线路 (站点列表可稍后由 setLine 建立)，新线路的交通方式按名称推断；返回线路编号 */
+    public int addLine(String line) {
+        int l = lines.intern(line);
+        ensureLine(l);
+        if (lineModes[l] == 0) lineModes[l] = (byte) TransportMode.infer(line);
+        return l;
+    }
+
+    public void setMode(String line, int mode) {
+        lineModes[addLine(line)] = (byte) mode;
+    }
+
+    /** 删除站点；须先更新 (或删除) 经过它的线路，仍有线路引用时返回 false */
+    public boolean removeStation(String station) {
+        int s = stations.id(station);
+        if (s < 0 || stationEntries[s].length > 0) return false;
+        stations.remove(station);
+        stationLines[s] = null;
+        stationEntries[s] = null;
+        return true;
+    }
+
+    /** 按线路当前的有序站点列表 (重新) 建立该线路的索引 */
+    public void setLine(String line, List<String> stops) {
+        int l = addLine(line);
+        clearLine(l);
+        int[] order = new int[stops.size()];
+        BitSet set = new BitSet();
+        for (int i = 0; i < order.length; i++) {
+            int s = stations.intern(stops.get(i));
+            ensureStation(s);
+            order[i] = s;
+            set.set(s);
+            stationLines[s].set(l);
+            long[] entries = stationEntries[s];
+            entries = Arrays.copyOf(entries, entries.length + 1);
+            entries[entries.length - 1] = ((long) l << 32) | i;
+            stationEntries[s] = entries;
+        }
+        lineOrder[l] = order;
+        lineStations[l] = set;
+    }
+
+    public void removeLine(String line) {
+        int l = lines.id(line);
+        if (l < 0) return;
+        clearLine(l);
+        lineModes[l] = 0;
+        lines.remove(line);
+    }
+
+    public void renameLine(String oldName, String newName) { lines.rename(oldName, newName); }
+    public void renameStation(String oldName, String newName) { stations.rename(oldName, newName); }
+
+    public void clear() {
+        stations.clear();
+        lines.clear();
+        Arrays.fill(lineOrder, null);
+        Arrays.fill(lineStations, null);
+        Arrays.fill(lineModes, (byte) 0);
+        Arrays.fill(stationLines, null);
+        Arrays.fill(stationEntries, null);
+    }
+
+    private void clearLine(int l) {
+        int[] order = lineOrder[l];
+        if (order == null) return;
+        for (int s : order) {
+            stationLines[s].clear(l);
+            long[] entries = stationEntries[s];
+            int keep = 0;
+            for (long entry : entries) if ((int) (entry >>> 32) != l) entries[keep++] = entry;
+            stationEntries[s] = Arrays.copyOf(entries, keep);
+        }
+        lineOrder[l] = null;
+        lineStations[l] = null;
+    }
+
+    private void ensureStation(int s) {
+        if (s >= stationLines.length) {
+            int cap = Math.max(s + 1, stationLines.length * 2);
+            stationLines = Arrays.copyOf(stationLines, cap);
+            stationEntries = Arrays.copyOf(stationEntries, cap);
+        }
+        if (stationLines[s] == null) {
+            stationLines[s] = new BitSet();
+            stationEntries[s] = new long[0];
+        }
+    }
+
+    private void ensureLine(int l) {
+        if (l >= lineOrder.length) {
+            int cap = Math.max(l + 1, lineOrder.length * 2);
+            lineOrder = Arrays.copyOf(lineOrder, cap);
+            lineStations = Arrays.copyOf(lineStations, cap);
+            lineModes = Arrays.copyOf(lineModes, cap);
+        }
+    }
+
+    // ========== 查询 ==========
+
+    /** 线路编号对应的交通方式 (用于 {@link Connection#line}) */
+    public int mode(int lineId) { return lineModes[lineId]; }
+
+    /** 线路的交通方式，线路不存在时按名称推断 */
+    public int mode(String line) {
+        int l = lines.id(line);
+        return l < 0 ? TransportMode.infer(line) : lineModes[l];
+    }
+
+    /** 站点是否属于至少一条线路 */
+    public boolean onAnyLine(String station) {
+        int s = stations.id(station);
+        return s >= 0 && !stationLines[s].isEmpty();
+    }
+
+    /** 站点在线路上的站序 (从 0 开始)，不在该线路上时返回 -1 */
+    public int position(String station, String line) {
+        int s = stations.id(station), l = lines.id(line);
+        if (s < 0 || l < 0) return -1;
+        for (long entry : stationEntries[s]) {
+            if ((int) (entry >>> 32) == l) return (int) entry;
+        }
+        return -1;
+    }
+
+    /** 线路是否经过站点 */
+    public boolean contains(String line, String station) {
+        int s = stations.id(station), l = lines.id(line);
+        return s >= 0 && l >= 0 && lineStations[l] != null && lineStations[l].get(s);
+    }
+
+    /** 经过站点的全部线路 */
+    public List<String> linesAt(String station) {
+        int s = stations.id(station);
+        return s < 0 ? new ArrayList<>() : lineNames(stationLines[s]);
+    }
+
+    /** 同时经过两个站点的线路 (两站线路位图求交) */
+    public List<String> commonLines(String station1, String station2) {
+        int a = stations.id(station1), b = stations.id(station2);
+        if (a < 0 || b < 0) return new ArrayList<>();
+        BitSet common = (BitSet) stationLines[a].clone();
+        common.and(stationLines[b]);
+        return lineNames(common);
+    }
+
+    private List<String> lineNames(BitSet set) {
+        List<String> result = new ArrayList<>(set.cardinality());
+        for (int l = set.nextSetBit(0); l >= 0; l = set.nextSetBit(l + 1)) result.add(lines.name(l));
+        return result;
+    }
+}
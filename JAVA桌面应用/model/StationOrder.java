@@ -0,0 +1,192 @@
+package model;
+
+import java.util.*;
+
+/**
+ * 编译快照时的站点编号顺序。
+ * 邻接表是 HashMap，按其迭代顺序编号时相邻站点的编号互不相关，搜索时访问的数组元素散落在内存各处。
+ * 按空间位置 (Hilbert 曲线) 或沿线路 (BFS) 重新编号后，相邻站点以及它们在状态图中的状态、边都落在相近的位置，
+ * 因为状态图、权重表等派生数组都按站点编号排列，只需在编号这一步调整顺序。
+ */
+final class StationOrder {
+    // Hilbert 曲线每一维的精度 (位)
+    private static final int HILBERT_BITS = 16;
+
+    private StationOrder() {}
+
+    /**
+     * 按指定方式重新排列站点 (CompiledGraph.ORDER_*)
+     * @param names 邻接表迭代顺序的站名
+     * @return 重新排列后的站名
+     */
+    static String[] arrange(String[] names, TransportGraph graph, int mode) {
+        if (mode == CompiledGraph.ORDER_INSERTION || names.length <= 1) return names;
+        int n = names.length;
+        int[][] neighbors = neighbors(names, graph);
+        int[] order;
+        if (mode == CompiledGraph.ORDER_HILBERT) {
+            order = hilbert(names, graph, neighbors);
+        } else {
+            order = bfs(neighbors, new int[n], new boolean[n], 0);
+        }
+        String[] arranged = new String[n];
+        for (int i = 0; i < n; i++) arranged[i] = names[order[i]];
+        return arranged;
+    }
+
+    // 无向邻接 (按邻接表中的连接顺序，即沿线路的顺序)
+    private static int[][] neighbors(String[] names, TransportGraph graph) {
+        int n = names.length;
+        SymbolTable dict = graph.index.stations;
+        int[] local = new int[dict.capacity()];
+        Arrays.fill(local, -1);
+        for (int v = 0; v < n; v++) {
+            int id = dict.id(names[v]);
+            if (id >= 0) local[id] = v;
+        }
+        int[] degree = new int[n];
+        for (int v = 0; v < n; v++) {
+            for (Connection c : graph.adjList.get(names[v])) {
+                int u = local[c.to];
+                if (u < 0 || u == v) continue;
+                degree[v]++;
+                degree[u]++;
+            }
+        }
+        int[][] neighbors = new int[n][];
+        for (int v = 0; v < n; v++) neighbors[v] = new int[degree[v]];
+        Arrays.fill(degree, 0);
+        for (int v = 0; v < n; v++) {
+            for (Connection c : graph.adjList.get(names[v])) {
+                int u = local[c.to];
+                if (u < 0 || u == v) continue;
+                neighbors[v][degree[v]++] = u;
+                neighbors[u][degree[u]++] = v;
+            }
+        }
+        return neighbors;
+    }
+
+    /**
+     * 有坐标的站点按 Hilbert 曲线排序；没有坐标的站点紧跟在 BFS 到达它的最近一个有坐标站点之后；
+     * 与有坐标站点不连通的部分按 BFS 顺序排在最后
+     */
+    private static int[] hilbert(String[] names, TransportGraph graph, int[][] neighbors) {
+        int n = names.length;
+        double[] x = new double[n], y = new double[n];
+        boolean[] known = new boolean[n];
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        int knownCount = 0;
+        for (int v = 0; v < n; v++) {
+            GeoCoordinate c = graph.stationCoords.get(names[v]);
+            // 坐标 (0,0) 视为尚未设置
+            if (c == null || (c.longitude == 0 && c.latitude == 0)) continue;
+            known[v] = true;
+            x[v] = c.longitude;
+            y[v] = c.latitude;
+            minX = Math.min(minX, x[v]);
+            maxX = Math.max(maxX, x[v]);
+            minY = Math.min(minY, y[v]);
+            maxY = Math.max(maxY, y[v]);
+            knownCount++;
+        }
+        if (knownCount == 0) return bfs(neighbors, new int[n], new boolean[n], 0);
+
+        // 两维使用相同比例映射到 [0, 2^16)，保持形状
+        double side = Math.max(Math.max(maxX - minX, maxY - minY), 1e-9);
+        int cells = (1 << HILBERT_BITS) - 1;
+        long[] key = new long[n];
+        Integer[] seeds = new Integer[knownCount];
+        int k = 0;
+        for (int v = 0; v < n; v++) {
+            if (!known[v]) continue;
+            int hx = (int) Math.round((x[v] - minX) / side * cells);
+            int hy = (int) Math.round((y[v] - minY) / side * cells);
+            key[v] = hilbertIndex(hx, hy);
+            seeds[k++] = v;
+        }
+        Arrays.sort(seeds, Comparator.comparingLong((Integer v) -> key[v]).thenComparingInt(v -> v));
+
+        // 多源 BFS：无坐标站点继承 BFS 父节点的曲线位置，同位置时按发现顺序排在后面
+        int[] rank = new int[n];
+        boolean[] visited = new boolean[n];
+        int[] queue = new int[n];
+        int head = 0, tail = 0;
+        for (int v : seeds) {
+            visited[v] = true;
+            rank[v] = tail;
+            queue[tail++] = v;
+        }
+        while (head < tail) {
+            int v = queue[head++];
+            for (int u : neighbors[v]) {
+                if (visited[u]) continue;
+                visited[u] = true;
+                key[u] = key[v];
+                rank[u] = tail;
+                queue[tail++] = u;
+            }
+        }
+        int reached = tail;
+        Integer[] sorted = new Integer[reached];
+        for (int i = 0; i < reached; i++) sorted[i] = queue[i];
+        Arrays.sort(sorted, Comparator.comparingLong((Integer v) -> key[v]).thenComparingInt(v -> rank[v]));
+
+        int[] order = new int[n];
+        for (int i = 0; i < reached; i++) order[i] = sorted[i];
+        if (reached < n) {
+            int[] rest = bfs(neighbors, new int[n], visited, reached);
+            System.arraycopy(rest, reached, order, reached, n - reached);
+        }
+        return order;
+    }
+
+    /**
+     * 逐个连通分量沿线路 BFS：每个分量从度最小的站点 (通常是线路端点) 出发，
+     * 邻站按连接顺序入队。结果写入 order[from..)，visited 中已标记的站点跳过
+     */
+    private static int[] bfs(int[][] neighbors, int[] order, boolean[] visited, int from) {
+        int n = neighbors.length;
+        Integer[] starts = new Integer[n];
+        for (int v = 0; v < n; v++) starts[v] = v;
+        Arrays.sort(starts, Comparator.comparingInt((Integer v) -> neighbors[v].length).thenComparingInt(v -> v));
+        int tail = from;
+        for (int start : starts) {
+            if (visited[start]) continue;
+            int head = tail;
+            visited[start] = true;
+            order[tail++] = start;
+            while (head < tail) {
+                int v = order[head++];
+                for (int u : neighbors[v]) {
+                    if (visited[u]) continue;
+                    visited[u] = true;
+                    order[tail++] = u;
+                }
+            }
+        }
+        return order;
+    }
+
+    /** (x, y) 在 2^16 x 2^16 网格 Hilbert 曲线上的序号 */
+    static long hilbertIndex(int x, int y) {
+        int side = 1 << HILBERT_BITS;
+        long d = 0;
+        for (int s = side >> 1; s > 0; s >>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // 旋转象限，使下一级子曲线方向正确
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = side - 1 - x;
+                    y = side - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+}
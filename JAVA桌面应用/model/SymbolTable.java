@@ -0,0 +1,64 @@
+package model;
+
+import java.util.*;
+
+/**
+ * 名称 <-> 整数编号的双向字典。
+ * 编号一经分配保持不变：改名只替换名称、沿用原编号，删除的编号不再复用 (直到 clear)。
+ */
+public final class SymbolTable {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[16];
+    // 已分配的编号个数 (含已删除的)
+    private int allocated;
+
+    /** 名称对应的编号，不存在时返回 -1 */
+    public int id(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /** 名称对应的编号，不存在时分配新编号 */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        if (allocated == names.length) names = Arrays.copyOf(names, allocated * 2);
+        names[allocated] = name;
+        ids.put(name, allocated);
+        return allocated++;
+    }
+
+    /** 编号对应的名称，已删除时为 null */
+    public String name(int id) { return names[id]; }
+
+    public boolean contains(String name) { return ids.containsKey(name); }
+
+    /** 删除名称，返回其原编号，不存在时返回 -1 */
+    public int remove(String name) {
+        Integer id = ids.remove(name);
+        if (id == null) return -1;
+        names[id] = null;
+        return id;
+    }
+
+    /** 改名并沿用原编号；oldName 不存在或 newName 已存在时返回 false */
+    public boolean rename(String oldName, String newName) {
+        if (!ids.containsKey(oldName) || ids.containsKey(newName)) return false;
+        int id = ids.remove(oldName);
+        ids.put(newName, id);
+        names[id] = newName;
+        return true;
+    }
+
+    /** 现存名称个数 */
+    public int size() { return ids.size(); }
+
+    /** 编号上界：所有编号都小于该值 */
+    public int capacity() { return allocated; }
+
+    public void clear() {
+        ids.clear();
+        Arrays.fill(names, 0, allocated, null);
+        allocated = 0;
+    }
+}
@@ -0,0 +1,140 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 由 {@link CompiledGraph} 派生的时刻表模式：每条线路按上、下行展开为停靠站序列，
+ * 记录各站相对始发站的运行分钟数。班次在首末班之间按固定间隔从始发站发车，
+ * 因此某站第 k 班的发车时间 = 首班 + k * 间隔 + 运行分钟数，无需逐班存储。
+ * 线路表中相邻但已无连接的两站 (如删除区间后) 会把模式断开。
+ */
+public final class Timetable {
+    public final CompiledGraph base;
+
+    // 模式 p 的停靠站为 patternStops[patternOffsets[p] .. patternOffsets[p+1])
+    public final int[] patternOffsets;
+    public final int[] patternStops;
+    // 与 patternStops 对齐：距该模式始发站的运行分钟数
+    public final int[] patternTimes;
+    // 模式所属线路
+    public final int[] patternLine;
+
+    // 站点 v 所在的模式为 stopPatterns[stopOffsets[v] .. stopOffsets[v+1])，
+    // stopPositions 为该站在模式中的序号
+    public final int[] stopOffsets;
+    public final int[] stopPatterns;
+    public final int[] stopPositions;
+
+    private Timetable(CompiledGraph base, int[] patternOffsets, int[] patternStops, int[] patternTimes,
+                      int[] patternLine, int[] stopOffsets, int[] stopPatterns, int[] stopPositions) {
+        this.base = base;
+        this.patternOffsets = patternOffsets;
+        this.patternStops = patternStops;
+        this.patternTimes = patternTimes;
+        this.patternLine = patternLine;
+        this.stopOffsets = stopOffsets;
+        this.stopPatterns = stopPatterns;
+        this.stopPositions = stopPositions;
+    }
+
+    public int patternCount() { return patternLine.length; }
+
+    /**
+     * 模式 p 上第 i 个停靠站 (全局下标) 在 time 及之后最早可乘的班次序号，无车可乘时返回 -1
+     */
+    public int earliestTrip(int p, int i, int time, int headway) {
+        int line = patternLine[p];
+        int wait = time - base.firstDeparture[line] - patternTimes[i];
+        int trip = wait <= 0 ? 0 : (wait + headway - 1) / headway;
+        return base.firstDeparture[line] + trip * headway <= base.lastDeparture[line] ? trip : -1;
+    }
+
+    /** 班次 trip 从模式始发站发车的时间 */
+    public int tripStart(int p, int trip, int headway) {
+        return base.firstDeparture[patternLine[p]] + trip * headway;
+    }
+
+    /**
+     * 从编译快照构建：每条线路的正向、反向各成一组模式
+     */
+    public static Timetable build(CompiledGraph g) {
+        int n = g.stationCount();
+
+        // 1. 按方向切分为连续可达的停靠站序列
+        List<int[]> runs = new ArrayList<>();
+        List<int[]> runTimes = new ArrayList<>();
+        List<Integer> runLines = new ArrayList<>();
+        for (int line = 0; line < g.lineCount(); line++) {
+            int[] stops = g.lineStops[line];
+            for (int dir = 0; dir < 2; dir++) {
+                int[] run = new int[stops.length];
+                int[] times = new int[stops.length];
+                int size = 0;
+                for (int k = 0; k < stops.length; k++) {
+                    int v = stops[dir == 0 ? k : stops.length - 1 - k];
+                    int cost = size == 0 ? 0 : segmentCost(g, run[size - 1], v, line);
+                    if (cost < 0) {
+                        // 区间已断开：结束当前模式，从 v 重新开始
+                        addRun(runs, runTimes, runLines, run, times, size, line);
+                        size = 0;
+                    }
+                    times[size] = size == 0 ? 0 : times[size - 1] + cost;
+                    run[size++] = v;
+                }
+                addRun(runs, runTimes, runLines, run, times, size, line);
+            }
+        }
+
+        // 2. 展平为数组
+        int patterns = runs.size();
+        int[] patternOffsets = new int[patterns + 1];
+        int[] patternLine = new int[patterns];
+        for (int p = 0; p < patterns; p++) {
+            patternOffsets[p + 1] = patternOffsets[p] + runs.get(p).length;
+            patternLine[p] = runLines.get(p);
+        }
+        int total = patternOffsets[patterns];
+        int[] patternStops = new int[total];
+        int[] patternTimes = new int[total];
+        for (int p = 0; p < patterns; p++) {
+            System.arraycopy(runs.get(p), 0, patternStops, patternOffsets[p], runs.get(p).length);
+            System.arraycopy(runTimes.get(p), 0, patternTimes, patternOffsets[p], runs.get(p).length);
+        }
+
+        // 3. 站点 -> (模式, 序号)
+        int[] stopOffsets = new int[n + 1];
+        for (int v : patternStops) stopOffsets[v + 1]++;
+        for (int v = 0; v < n; v++) stopOffsets[v + 1] += stopOffsets[v];
+        int[] stopPatterns = new int[total];
+        int[] stopPositions = new int[total];
+        int[] fill = Arrays.copyOf(stopOffsets, n);
+        for (int p = 0; p < patterns; p++) {
+            for (int i = patternOffsets[p]; i < patternOffsets[p + 1]; i++) {
+                int slot = fill[patternStops[i]]++;
+                stopPatterns[slot] = p;
+                stopPositions[slot] = i;
+            }
+        }
+        return new Timetable(g, patternOffsets, patternStops, patternTimes, patternLine,
+                stopOffsets, stopPatterns, stopPositions);
+    }
+
+    // 至少两站才构成可乘坐的模式
+    private static void addRun(List<int[]> runs, List<int[]> runTimes, List<Integer> runLines,
+                               int[] run, int[] times, int size, int line) {
+        if (size < 2) return;
+        runs.add(Arrays.copyOf(run, size));
+        runTimes.add(Arrays.copyOf(times, size));
+        runLines.add(line);
+    }
+
+    // 线路 line 上 from -> to 的区间耗时，无此连接时返回 -1
+    private static int segmentCost(CompiledGraph g, int from, int to, int line) {
+        for (int e = g.offsets[from]; e < g.offsets[from + 1]; e++) {
+            if (g.targets[e] == to && g.lineIds[e] == line) return g.costs[e];
+        }
+        return -1;
+    }
+}
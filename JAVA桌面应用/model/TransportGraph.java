@@ -13,6 +13,67 @@ public class TransportGraph {
     public Map<String, LineInfo> lineMetaMap = new HashMap<>();
     // 站点坐标映射
     public Map<String, GeoCoordinate> stationCoords = new HashMap<>();
+    // 站点 -> (线路, 站序) 倒排索引，由下列修改方法同步维护 (只读使用)
+    public final StationLineIndex index = new StationLineIndex();
+    // (起点, 终点) -> 两站间各线路的连接，键由两站的字典编号拼成 (见 edgeKey)，改名时编号不变；
+    // 同一对站点上的线路很少，逐个比较线路编号即可
+    private final Map<Long, List<Connection>> edgeIndex = new HashMap<>();
+
+    // 图版本号：每次修改数据都会递增，用于判断编译快照是否过期
+    private volatile long version = 0;
+    // 结构版本号：站点、线路、连接关系、命名或站点编号顺序变化时递增；只改耗时时不变，
+    // 此时快照的编号与边顺序保持不变，按结构划分的预处理 (如多层覆盖图) 只需重新计算权重。
+    // 按 Hilbert 曲线编号时站点编号取决于坐标，修改坐标也递增结构版本
+    private volatile long structureVersion = 0;
+    // 供路径搜索使用的只读编译快照 (按需重建)
+    private volatile CompiledGraph compiled = null;
+    // 编译快照时的站点编号顺序 (CompiledGraph.ORDER_*)
+    private volatile int stationOrder = CompiledGraph.ORDER_HILBERT;
+
+    public long getVersion() { return version; }
+    public long getStructureVersion() { return structureVersion; }
+    public int getStationOrder() { return stationOrder; }
+
+    /**
+     * 切换站点编号顺序：属于结构修改，下次取快照时按新顺序重新编号。
+     * 编号顺序变化后持久化的预处理文件指纹不再匹配，会自动重建
+     */
+    public void setStationOrder(int order) {
+        if (order < CompiledGraph.ORDER_INSERTION || order > CompiledGraph.ORDER_BFS) {
+            throw new IllegalArgumentException("未知编号顺序: " + order);
+        }
+        if (order == stationOrder) return;
+        stationOrder = order;
+        touch();
+    }
+
+    /**
+     * 获取当前版本的编译快照，数据有修改时自动重新编译
+     */
+    public CompiledGraph compiled() {
+        CompiledGraph snapshot = compiled;
+        if (snapshot != null && snapshot.version == version) return snapshot;
+        synchronized (this) {
+            snapshot = compiled;
+            if (snapshot == null || snapshot.version != version) {
+                snapshot = CompiledGraph.compile(this, version, structureVersion);
+                compiled = snapshot;
+            }
+            return snapshot;
+        }
+    }
+
+    // 数据被修改：递增版本号，使旧快照失效
+    private void touch() {
+        structureVersion++;
+        touchWeights();
+    }
+
+    // 只有耗时 (或不影响编号的坐标) 被修改：结构版本不变
+    private void touchWeights() {
+        version++;
+        compiled = null;
+    }
 
     // ========== 1. 增加 (Add) 功能 ==========
 
@@ -27,6 +88,8 @@ public class TransportGraph {
         }
     
         adjList.putIfAbsent(station, new ArrayList<>()); 
+        index.addStation(station);
+        touch();
         return true;
     }
 
@@ -44,36 +107,72 @@ public class TransportGraph {
         // 3. 更新线路元数据
         lineStationsMap.computeIfAbsent(lineName, k -> new ArrayList<>());
         if (!lineMetaMap.containsKey(lineName)) {
-            lineMetaMap.put(lineName, new LineInfo(lineName, firstTime, lastTime));
+            LineInfo info = new LineInfo(lineName, firstTime, lastTime);
+            lineMetaMap.put(lineName, info);
+            index.setMode(lineName, info.mode);
         }
         
         // 4. 更新线路的站点有序列表
         List<String> stops = lineStationsMap.get(lineName);
-        boolean hasS1 = stops.contains(s1);
-        boolean hasS2 = stops.contains(s2);
+        boolean hasS1 = index.contains(lineName, s1);
+        boolean hasS2 = index.contains(lineName, s2);
 
         if (!hasS1 && !hasS2) {
             stops.add(s1); stops.add(s2);
         } else if (hasS1 && !hasS2) {
-            stops.add(stops.indexOf(s1) + 1, s2);
+            stops.add(index.position(s1, lineName) + 1, s2);
         } else if (!hasS1 && hasS2) {
-            stops.add(stops.indexOf(s2), s1);
+            stops.add(index.position(s2, lineName), s1);
         }
+        if (!hasS1 || !hasS2) index.setLine(lineName, stops);
+        touch();
         return true;
     }
 
     private void addConnectionToGraph(String from, String to, String line, int time) {
-        List<Connection> conns = adjList.get(from);
+        int l = index.addLine(line); // 线路的站点列表稍后才登记，这里先分配编号
+        int f = index.stations.id(from), t = index.stations.id(to);
         // 查重：避免重复添加同一条线同一方向的边
-        for (Connection c : conns) {
-            if (c.toStation.equals(to) && c.lineName.equals(line)) {
-                c.timeCost = time; // 允许更新时间
-                return;
-            }
+        Connection existing = findEdge(f, t, l);
+        if (existing != null) {
+            existing.timeCost = time; // 允许更新时间
+            return;
         }
-        conns.add(new Connection(from, to, line, time));
+        Connection conn = new Connection(f, t, l, time);
+        adjList.get(from).add(conn);
+        edgeIndex.computeIfAbsent(edgeKey(f, t), k -> new ArrayList<>(1)).add(conn);
     }
 
+    // 两个站点编号各占 32 位，不会溢出
+    private static long edgeKey(int from, int to) {
+        return ((long) from << 32) | (to & 0xffffffffL);
+    }
+
+    private Connection findEdge(String from, String to, String line) {
+        int f = index.stations.id(from), t = index.stations.id(to), l = index.lines.id(line);
+        return f < 0 || t < 0 || l < 0 ? null : findEdge(f, t, l);
+    }
+
+    private Connection findEdge(int from, int to, int line) {
+        List<Connection> between = edgeIndex.get(edgeKey(from, to));
+        if (between == null) return null;
+        for (Connection c : between) if (c.line == line) return c;
+        return null;
+    }
+
+    private void unindexEdge(Connection c) {
+        long key = edgeKey(c.from, c.to);
+        List<Connection> between = edgeIndex.get(key);
+        if (between == null) return;
+        between.remove(c);
+        if (between.isEmpty()) edgeIndex.remove(key);
+    }
+
+    /** 站点编号 -> 站名 (用于还原 {@link Connection} 中的编号) */
+    public String stationName(int id) { return index.stations.name(id); }
+    /** 线路编号 -> 线路名 */
+    public String lineName(int id) { return index.lines.name(id); }
+
     // ========== 2. 删除 (Delete) 功能 ==========
 
     public boolean deleteStation(String station) {
@@ -81,27 +180,37 @@ public class TransportGraph {
         
         // 1. 移除连接
         if (adjList.containsKey(station)) {
+            int s = index.stations.id(station);
             for (Connection conn : adjList.get(station)) {
-                List<Connection> neighborConns = adjList.get(conn.toStation);
+                unindexEdge(conn);
+                List<Connection> neighborConns = adjList.get(stationName(conn.to));
                 if (neighborConns != null) {
-                    neighborConns.removeIf(c -> c.toStation.equals(station));
+                    neighborConns.removeIf(c -> {
+                        if (c.to != s) return false;
+                        unindexEdge(c);
+                        return true;
+                    });
                 }
             }
         }
         adjList.remove(station);
         
-        // 2. 移除线路引用
-        Iterator<Map.Entry<String, List<String>>> it = lineStationsMap.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String, List<String>> entry = it.next();
-            entry.getValue().remove(station);
-            if (entry.getValue().isEmpty()) {
-                lineMetaMap.remove(entry.getKey());
-                it.remove();
+        // 2. 移除线路引用 (只需处理经过该站的线路)
+        for (String lineName : index.linesAt(station)) {
+            List<String> stops = lineStationsMap.get(lineName);
+            stops.remove(station);
+            if (stops.isEmpty()) {
+                lineMetaMap.remove(lineName);
+                lineStationsMap.remove(lineName);
+                index.removeLine(lineName);
+            } else {
+                index.setLine(lineName, stops);
             }
         }
         // 3. 移除坐标
         stationCoords.remove(station);
+        index.removeStation(station);
+        touch();
         return true;
     }
 
@@ -109,8 +218,8 @@ public class TransportGraph {
         if (!lineStationsMap.containsKey(lineName)) return false;
         List<String> stations = lineStationsMap.get(lineName);
         
-        int idx1 = stations.indexOf(startStation);
-        int idx2 = stations.indexOf(endStation);
+        int idx1 = index.position(startStation, lineName);
+        int idx2 = index.position(endStation, lineName);
         if (idx1 == -1 || idx2 == -1 || idx1 == idx2) return false;
         
         int start = Math.min(idx1, idx2);
@@ -129,42 +238,48 @@ public class TransportGraph {
         for (int i = start + 1; i < end; i++) potentialOrphans.add(stations.get(i));
 
         stations.subList(start + 1, end).clear();
+        index.setLine(lineName, stations);
         for (String orphan : potentialOrphans) checkAndRemoveOrphanStation(orphan);
+        touch();
         return true;
     }
     
     private void removeEdge(String s1, String s2, String lineName) {
-        if (adjList.containsKey(s1)) {
-            adjList.get(s1).removeIf(c -> c.toStation.equals(s2) && c.lineName.equals(lineName));
+        Connection conn = findEdge(s1, s2, lineName);
+        if (conn != null) {
+            unindexEdge(conn);
+            adjList.get(s1).remove(conn);
         }
     }
 
     public boolean deleteLine(String lineName) {
         if (!lineStationsMap.containsKey(lineName)) return false;
         List<String> stations = new ArrayList<>(lineStationsMap.get(lineName));
+        int l = index.lines.id(lineName);
         
         for (String station : stations) {
             if (adjList.containsKey(station)) {
-                adjList.get(station).removeIf(c -> c.lineName.equals(lineName));
+                adjList.get(station).removeIf(c -> {
+                    if (c.line != l) return false;
+                    unindexEdge(c);
+                    return true;
+                });
             }
         }
         lineStationsMap.remove(lineName);
         lineMetaMap.remove(lineName);
+        index.removeLine(lineName);
         for (String station : stations) checkAndRemoveOrphanStation(station);
+        touch();
         return true;
     }
 
     private void checkAndRemoveOrphanStation(String station) {
-        boolean belongsToAnyLine = false;
-        for (List<String> lines : lineStationsMap.values()) {
-            if (lines.contains(station)) {
-                belongsToAnyLine = true;
-                break;
-            }
-        }
-        if (!belongsToAnyLine) {
-            adjList.remove(station);
+        if (!index.onAnyLine(station)) {
+            List<Connection> rest = adjList.remove(station);
+            if (rest != null) for (Connection c : rest) unindexEdge(c);
             stationCoords.remove(station);
+            index.removeStation(station);
         }
     }
 
@@ -176,15 +291,12 @@ public class TransportGraph {
         stationCoords.put(newName, stationCoords.remove(oldName));
         adjList.put(newName, adjList.remove(oldName));
         
-        for (List<Connection> list : adjList.values()) {
-            for (Connection c : list) {
-                if (c.fromStation.equals(oldName)) c.fromStation = newName;
-                if (c.toStation.equals(oldName)) c.toStation = newName;
-            }
-        }
-        for (List<String> stops : lineStationsMap.values()) {
-            Collections.replaceAll(stops, oldName, newName);
+        // 连接只存编号：改名只需更新字典，再改写经过该站的线路列表 (环线等可能多次经过同一站，全部替换)
+        for (String lineName : index.linesAt(oldName)) {
+            Collections.replaceAll(lineStationsMap.get(lineName), oldName, newName);
         }
+        index.renameStation(oldName, newName);
+        touch();
         return true;
     }
 
@@ -193,21 +305,37 @@ public class TransportGraph {
         
         lineStationsMap.put(newName, lineStationsMap.remove(oldName));
         LineInfo info = lineMetaMap.remove(oldName);
+        index.renameLine(oldName, newName);
         if (info != null) {
             info.lineName = newName;
-            lineMetaMap.put(newName, info);
-        }
-        for (List<Connection> list : adjList.values()) {
-            for (Connection c : list) {
-                if (c.lineName.equals(oldName)) c.lineName = newName;
+            // 方式原本由名称推断的，按新名称重新推断；数据文件中写明的方式保持不变
+            if (info.mode == TransportMode.infer(oldName)) {
+                info.mode = TransportMode.infer(newName);
+                index.setMode(newName, info.mode);
             }
+            lineMetaMap.put(newName, info);
         }
+        touch();
+        return true;
+    }
+    
+    /**
+     * 设置线路的交通方式 (TransportMode)，保存时写入数据文件
+     */
+    public boolean setLineMode(String lineName, int mode) {
+        LineInfo info = lineMetaMap.get(lineName);
+        if (info == null || mode == 0) return false;
+        info.mode = mode;
+        index.setMode(lineName, mode);
+        touch();
         return true;
     }
     
     public boolean updateStationCoord(String station, int x, int y) {
         if(!stationCoords.containsKey(station)) return false;
         stationCoords.put(station, new GeoCoordinate(x, y));
+        if (stationOrder == CompiledGraph.ORDER_HILBERT) touch();
+        else touchWeights();
         return true;
     }
 
@@ -217,29 +345,26 @@ public class TransportGraph {
     public boolean updateConnectionTime(String lineName, String s1, String s2, int newTime) {
         boolean found = false;
         // 正向
-        if (adjList.containsKey(s1)) {
-            for (Connection c : adjList.get(s1)) {
-                if (c.toStation.equals(s2) && c.lineName.equals(lineName)) {
-                    c.timeCost = newTime;
-                    found = true;
-                }
-            }
+        Connection forward = findEdge(s1, s2, lineName);
+        if (forward != null) {
+            forward.timeCost = newTime;
+            found = true;
         }
         // 反向
-        if (adjList.containsKey(s2)) {
-            for (Connection c : adjList.get(s2)) {
-                if (c.toStation.equals(s1) && c.lineName.equals(lineName)) {
-                    c.timeCost = newTime;
-                    found = true;
-                }
-            }
+        Connection backward = findEdge(s2, s1, lineName);
+        if (backward != null) {
+            backward.timeCost = newTime;
+            found = true;
         }
+        if (found) touchWeights();
         return found;
     }
 
     // ========== 4. 查询辅助 ==========
 
     public List<String> getAllLines() { return new ArrayList<>(lineStationsMap.keySet()); }
+    /** 线路的交通方式 (TransportMode) */
+    public int getLineMode(String lineName) { return index.mode(lineName); }
     public List<String> getAllStations() { return new ArrayList<>(stationCoords.keySet()); }
     
     public int[] getStationCoords(String station) {
@@ -252,14 +377,8 @@ public class TransportGraph {
      * 获取指定线路两站之间的耗时（用于路书）
      */
     public int getConnectionTime(String from, String to, String lineName) {
-        if (adjList.containsKey(from)) {
-            for (Connection c : adjList.get(from)) {
-                if (c.toStation.equals(to) && c.lineName.equals(lineName)) {
-                    return c.timeCost;
-                }
-            }
-        }
-        return 0; // 未找到
+        Connection c = findEdge(from, to, lineName);
+        return c != null ? c.timeCost : 0; // 未找到为 0
     }
 
     // ========== 5. 文件 IO (支持 A,time,B 格式) ==========
@@ -292,6 +411,10 @@ public class TransportGraph {
                         sb.append(",").append(time).append(",");
                     }
                 }
+                // 方式与按名称推断的不同时才写出 (可选的第 6 段)
+                if (info != null && info.mode != TransportMode.infer(lineName)) {
+                    sb.append("|").append(TransportMode.format(info.mode));
+                }
                 out.println(sb.toString());
             }
             
@@ -308,33 +431,60 @@ public class TransportGraph {
     
     // 内部辅助：查找两站在线路上的当前耗时
     private int findTimeCost(String from, String to, String lineName) {
-        if (adjList.containsKey(from)) {
-            for (Connection c : adjList.get(from)) {
-                if (c.toStation.equals(to) && c.lineName.equals(lineName)) {
-                    return c.timeCost;
-                }
-            }
-        }
-        return 2; // 默认值
+        Connection c = findEdge(from, to, lineName);
+        return c != null ? c.timeCost : 2; // 默认值
     }
     
     public boolean loadFromFile(String filename) {
         File f = new File(filename);
         if (!f.exists()) return false;
-        
+
+        adjList.clear();
+        lineStationsMap.clear();
+        lineMetaMap.clear();
+        stationCoords.clear();
+        index.clear();
+        edgeIndex.clear();
+        return readFile(filename, "");
+    }
+
+    /**
+     * 将另一座城市的数据文件合并进当前图，不清空已有数据。只共享站点：同名站点视为同一站点 (城际换乘点)；
+     * 线路名加上 "城市·" 前缀，各城市的 "1号线" 等同名线路互不合并。
+     * 加前缀后仍与已有线路重名时拒绝合并，不做任何修改并返回 false
+     */
+    public boolean mergeFromFile(String filename, String city) {
+        if (city == null || city.trim().isEmpty()) throw new IllegalArgumentException("合并数据文件需指定城市名");
+        File f = new File(filename);
+        if (!f.exists()) return false;
+        return readFile(filename, city.trim() + "·");
+    }
+
+    // 读取数据文件并追加到当前图，文件中的线路名加上 prefix
+    private boolean readFile(String filename, String prefix) {
         try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
-            adjList.clear();
-            lineStationsMap.clear();
-            lineMetaMap.clear();
-            stationCoords.clear();
-            
+            List<String[]> records = new ArrayList<>();
             String line;
             while ((line = br.readLine()) != null) {
                 String[] parts = line.split("\\|");
-                if (parts.length < 2) continue;
-                
+                if (parts.length >= 2) records.add(parts);
+            }
+
+            // 与已有线路重名：拒绝合并，避免两条线路的站点被拼成一条
+            Set<String> clashes = new TreeSet<>();
+            for (String[] parts : records) {
+                if (parts[0].equals("LINE") && parts.length >= 5 && lineStationsMap.containsKey(prefix + parts[1])) {
+                    clashes.add(prefix + parts[1]);
+                }
+            }
+            if (!clashes.isEmpty()) {
+                System.err.println("线路重名，拒绝合并 " + filename + ": " + clashes);
+                return false;
+            }
+
+            for (String[] parts : records) {
                 if (parts[0].equals("LINE") && parts.length >= 5) {
-                    String lineName = parts[1];
+                    String lineName = prefix + parts[1];
                     String firstTime = parts[2];
                     String lastTime = parts[3];
                     
@@ -356,15 +506,25 @@ public class TransportGraph {
                             System.err.println("数据格式错误: " + lineName);
                         }
                     }
+                    
+                    // 可选：LINE|名称|首班|末班|站点|方式；未给出时按不带前缀的原线路名推断
+                    int mode = parts.length >= 6 ? TransportMode.parse(parts[5]) : 0;
+                    if (mode == 0 && !prefix.isEmpty()) mode = TransportMode.infer(parts[1]);
+                    if (mode != 0 && lineMetaMap.containsKey(lineName)) {
+                        lineMetaMap.get(lineName).mode = mode;
+                        index.setMode(lineName, mode);
+                    }
                 } else if (parts[0].equals("COORD") && parts.length >= 4) {
                     try {
                         String station = parts[1];
                         double lon = Double.parseDouble(parts[2]);
                         double lat = Double.parseDouble(parts[3]);
                         stationCoords.put(station, new GeoCoordinate(lon, lat));
+                        index.addStation(station);
                     } catch (Exception e) {}
                 }
             }
+            touch();
             return true;
         } catch (Exception e) {
             e.printStackTrace();
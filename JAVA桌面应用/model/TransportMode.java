@@ -0,0 +1,55 @@
+package model;
+
+import java.util.regex.Pattern;
+
+/**
+ * 线路的交通方式，按位取值，可组合成掩码：筛选时只需一次按位与。
+ * 新增方式时取下一个空闲位即可。
+ */
+public final class TransportMode {
+    public static final int METRO = 1;     // 地铁 (数字线)
+    public static final int SUBURBAN = 2;  // 市域 S 线
+    public static final int BUS = 4;       // 公交
+
+    // 常用组合
+    public static final int RAIL = METRO | SUBURBAN;
+    public static final int ALL = METRO | SUBURBAN | BUS;
+
+    // 市域线的命名：S 加线路编号，如 "S1号线(机场线)"
+    private static final Pattern SUBURBAN_NAME = Pattern.compile("^[Ss]\\d+");
+
+    private TransportMode() {}
+
+    /**
+     * 按线路名推断方式 (数据文件未写明方式时使用)：含"公交"为公交，S 加数字开头为市域线，其余为地铁。
+     * 其它 S 开头的线路名 (如 "Shuttle") 按地铁处理，需要时在数据文件中写明方式
+     */
+    public static int infer(String lineName) {
+        if (lineName.contains("公交")) return BUS;
+        if (SUBURBAN_NAME.matcher(lineName).find()) return SUBURBAN;
+        return METRO;
+    }
+
+    /** 数据文件中的方式名 (多种方式以 + 连接，如 METRO+SUBURBAN) -> 方式，无法识别时返回 0 */
+    public static int parse(String name) {
+        int mode = 0;
+        for (String part : name.split("\\+")) {
+            switch (part.trim().toUpperCase()) {
+                case "METRO": mode |= METRO; break;
+                case "SUBURBAN": mode |= SUBURBAN; break;
+                case "BUS": mode |= BUS; break;
+                default: return 0;
+            }
+        }
+        return mode;
+    }
+
+    /** 方式 -> 数据文件中的方式名，多种方式以 + 连接 */
+    public static String format(int mode) {
+        StringBuilder sb = new StringBuilder();
+        if ((mode & METRO) != 0) sb.append("+METRO");
+        if ((mode & SUBURBAN) != 0) sb.append("+SUBURBAN");
+        if ((mode & BUS) != 0) sb.append("+BUS");
+        return (mode & ~ALL) != 0 || sb.length() == 0 ? String.valueOf(mode) : sb.substring(1);
+    }
+}
@@ -0,0 +1,43 @@
+package service;
+
+import model.*;
+
+/**
+ * 状态图上的 A* 搜索：堆键为 已走代价 + 到终点的下界 (地理下界或路标下界)。
+ * 下界可采纳，终点状态第一次出堆即为最优；若下界在个别站点不一致，已出堆状态允许被重新打开。
+ */
+public final class AStarRouter {
+    private AStarRouter() {}
+
+    /**
+     * @return 终点状态编号，不可达返回 -1；路径保存在 ws 的前驱数组中
+     */
+    public static int search(LineStateGraph sg, int[] w, Heuristic h, int source, int target, SearchWorkspace ws) {
+        ws.reset(sg.stateCount());
+        IntPriorityQueue pq = ws.heap;
+        int h0 = h.estimate(source, target);
+        for (int s = sg.stationStates[source]; s < sg.stationStates[source + 1]; s++) {
+            ws.label(s, 0, -1, -1);
+            pq.push(s, h0);
+        }
+
+        while (!pq.isEmpty()) {
+            int curr = pq.pop();
+            ws.settle(curr);
+            if (sg.stateStation[curr] == target) return curr;
+
+            int cost = ws.dist[curr];
+            for (int e = sg.offsets[curr], stop = sg.offsets[curr + 1]; e < stop; e++) {
+                int weight = w[e];
+                if (weight == LineAwareRouter.EXCLUDED) continue;
+                int next = sg.targets[e];
+                int newCost = cost + weight;
+                if (newCost < ws.dist(next)) {
+                    ws.label(next, newCost, curr, e);
+                    pq.push(next, newCost + h.estimate(sg.stateStation[next], target));
+                }
+            }
+        }
+        return -1;
+    }
+}
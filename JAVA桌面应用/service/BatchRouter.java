@@ -0,0 +1,87 @@
+package service;
+
+import model.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * 批量起终点查询：按块读取查询，块内按 (起点, 策略) 分组，各组在 ForkJoin 公共池中并行计算，
+ * 结果按输入顺序逐块输出，内存占用与查询总数无关。
+ * 当前引擎为状态图 Dijkstra 时同组共享一棵一对多最短路树 (与逐条查询的结果相同)；
+ * 选用其它引擎时逐条交给该引擎，保证批量结果与 search 一致。
+ */
+final class BatchRouter {
+    // 每块读取的查询条数
+    static final int CHUNK_SIZE = 4096;
+
+    private final NavigationService service;
+    private final TransportGraph graph;
+
+    BatchRouter(NavigationService service, TransportGraph graph) {
+        this.service = service;
+        this.graph = graph;
+    }
+
+    void route(Iterator<RouteQuery> queries, Consumer<RouteResult> sink) {
+        List<RouteQuery> chunk = new ArrayList<>(CHUNK_SIZE);
+        while (queries.hasNext()) {
+            chunk.add(queries.next());
+            if (chunk.size() == CHUNK_SIZE || !queries.hasNext()) {
+                for (RouteResult r : routeChunk(chunk)) sink.accept(r);
+                chunk.clear();
+            }
+        }
+    }
+
+    RouteResult[] routeChunk(List<RouteQuery> chunk) {
+        CompiledGraph g = graph.compiled();
+        RouteResult[] results = new RouteResult[chunk.size()];
+
+        // 1. 按 (起点编号, 策略) 分组，起点不存在的查询结果为 null
+        Map<Long, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            RouteQuery q = chunk.get(i);
+            int origin = q.start == null ? -1 : g.stationId(q.start);
+            if (origin < 0) continue;
+            groups.computeIfAbsent(((long) origin << 32) | (q.strategy & 0xffffffffL), k -> new ArrayList<>()).add(i);
+        }
+
+        // 2. 各组并行求解
+        List<List<Integer>> members = new ArrayList<>(groups.values());
+        IntStream.range(0, members.size()).parallel().forEach(i -> solveGroup(g, chunk, members.get(i), results));
+        return results;
+    }
+
+    private void solveGroup(CompiledGraph g, List<RouteQuery> chunk, List<Integer> members, RouteResult[] results) {
+        RouteQuery first = chunk.get(members.get(0));
+        // 单条查询：点对点搜索比一对多树更省；
+        // 换乘最少由专用引擎逐条回答 (与 search 一致，一对多树的代价是换乘罚时而非换乘次数)；
+        // 其它引擎在等价路径间的取舍可能不同，也逐条回答
+        int engine = service.getEngine();
+        if (members.size() == 1 || first.strategy == NavigationService.STRATEGY_TRANSFER
+                || engine != NavigationService.ENGINE_LINE_AWARE) {
+            for (int i : members) {
+                RouteQuery q = chunk.get(i);
+                results[i] = q.end == null ? null : service.search(q.start, q.end, q.strategy, engine);
+            }
+            return;
+        }
+        int origin = g.stationId(first.start);
+        LineStateGraph sg = g.lineStates();
+        SearchWorkspace ws = SearchWorkspace.local();
+        LineAwareRouter.searchAll(sg, LineAwareRouter.weights(g, first.strategy), origin, ws);
+        String name = NavigationService.strategyName(first.strategy);
+        for (int i : members) {
+            RouteQuery q = chunk.get(i);
+            int target = q.end == null ? -1 : g.stationId(q.end);
+            if (target < 0) continue;
+            if (target == origin) {
+                results[i] = NavigationService.singleStation(g, origin, q.strategy);
+                continue;
+            }
+            int endState = LineAwareRouter.bestState(sg, ws, target);
+            if (endState >= 0) results[i] = LineAwareRouter.buildResult(sg, ws, endState, name);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package service;
+
+import model.*;
+
+/**
+ * 状态图上的双向 Dijkstra：正向从起点站所有状态出发，反向沿入边从终点站所有状态出发。
+ * 当两侧堆顶之和不小于当前最优相遇代价时停止，结果与单向搜索同样精确。
+ */
+public final class BidirectionalRouter {
+    private BidirectionalRouter() {}
+
+    /**
+     * @return 相遇状态编号，不可达返回 -1；两侧路径分别保存在 fwd / bwd 的前驱数组中
+     */
+    public static int search(LineStateGraph sg, int[] w, int source, int target,
+                             SearchWorkspace fwd, SearchWorkspace bwd) {
+        int states = sg.stateCount();
+        fwd.reset(states);
+        bwd.reset(states);
+        for (int s = sg.stationStates[source]; s < sg.stationStates[source + 1]; s++) {
+            fwd.label(s, 0, -1, -1);
+            fwd.heap.push(s, 0);
+        }
+        for (int s = sg.stationStates[target]; s < sg.stationStates[target + 1]; s++) {
+            bwd.label(s, 0, -1, -1);
+            bwd.heap.push(s, 0);
+        }
+
+        long best = Long.MAX_VALUE;
+        int meet = -1;
+        IntPriorityQueue fq = fwd.heap, bq = bwd.heap;
+        while (!fq.isEmpty() && !bq.isEmpty()) {
+            // 停止条件：任何尚未发现的路径代价都不小于两侧堆顶之和
+            if ((long) fq.minKey() + bq.minKey() >= best) break;
+
+            if (fq.minKey() <= bq.minKey()) {
+                int cost = fq.minKey();
+                int curr = fq.pop();
+                fwd.settle(curr);
+                for (int e = sg.offsets[curr], stop = sg.offsets[curr + 1]; e < stop; e++) {
+                    int weight = w[e];
+                    if (weight == LineAwareRouter.EXCLUDED) continue;
+                    int next = sg.targets[e];
+                    int newCost = cost + weight;
+                    if (newCost < fwd.dist(next)) {
+                        fwd.label(next, newCost, curr, e);
+                        fq.push(next, newCost);
+                    }
+                    if (bwd.reached(next) && (long) fwd.dist[next] + bwd.dist[next] < best) {
+                        best = (long) fwd.dist[next] + bwd.dist[next];
+                        meet = next;
+                    }
+                }
+                if (bwd.reached(curr) && (long) cost + bwd.dist[curr] < best) {
+                    best = (long) cost + bwd.dist[curr];
+                    meet = curr;
+                }
+            } else {
+                int cost = bq.minKey();
+                int curr = bq.pop();
+                bwd.settle(curr);
+                for (int i = sg.inOffsets[curr], stop = sg.inOffsets[curr + 1]; i < stop; i++) {
+                    int e = sg.inEdges[i];
+                    int weight = w[e];
+                    if (weight == LineAwareRouter.EXCLUDED) continue;
+                    int prev = sg.inSources[i];
+                    int newCost = cost + weight;
+                    if (newCost < bwd.dist(prev)) {
+                        // 反向一侧的 parent 指向更靠近终点的状态
+                        bwd.label(prev, newCost, curr, e);
+                        bq.push(prev, newCost);
+                    }
+                    if (fwd.reached(prev) && (long) bwd.dist[prev] + fwd.dist[prev] < best) {
+                        best = (long) bwd.dist[prev] + fwd.dist[prev];
+                        meet = prev;
+                    }
+                }
+                if (fwd.reached(curr) && (long) cost + fwd.dist[curr] < best) {
+                    best = (long) cost + fwd.dist[curr];
+                    meet = curr;
+                }
+            }
+        }
+        return meet;
+    }
+
+    /**
+     * 拼接两侧路径，生成导航结果
+     */
+    public static RouteResult buildResult(LineStateGraph sg, SearchWorkspace fwd, SearchWorkspace bwd,
+                                          int meet, String strategyName) {
+        int head = 0, tail = 0;
+        for (int s = meet; fwd.parent[s] >= 0; s = fwd.parent[s]) head++;
+        for (int s = meet; bwd.parent[s] >= 0; s = bwd.parent[s]) tail++;
+
+        int[] edges = fwd.pathBuffer(head + tail);
+        int first = meet;
+        for (int i = head - 1; i >= 0; i--) {
+            edges[i] = fwd.parentEdge[first];
+            first = fwd.parent[first];
+        }
+        int s = meet;
+        for (int i = head; i < head + tail; i++) {
+            edges[i] = bwd.parentEdge[s];
+            s = bwd.parent[s];
+        }
+        return LineAwareRouter.toRoute(sg, first, edges, head + tail, strategyName);
+    }
+}
@@ -0,0 +1,150 @@
+package service;
+
+import java.util.Arrays;
+
+/**
+ * 单调桶队列 (Dial)：键为小整数时，按键值分桶，入队 / decrease-key 为 O(1)，
+ * 出队只需从当前最小键向后找第一个非空桶。
+ * 桶数组是环形的，只要队内最大键与最小键之差小于桶数，键值对桶数取模即可唯一定位；
+ * 差值超出时桶数翻倍。Dijkstra 类搜索的键单调不减，差值不超过最大边权，
+ * 因此分钟级耗时与常数换乘罚时只需几十到几千个桶。
+ * 偶尔入队比当前最小键更小的键 (如不一致的估价) 也能正确处理，只是扫描代价变大。
+ */
+public final class BucketQueue implements IntPriorityQueue {
+    private static final int NONE = -1;
+    // prev 取该值表示元素不在队列中
+    private static final int ABSENT = -2;
+
+    // 桶 -> 链表头元素
+    private int[] heads;
+    private int mask;
+    // 元素 -> 键 / 同桶链表的前后元素 (prev 为 NONE 表示是链表头)
+    private int[] keys;
+    private int[] next;
+    private int[] prev;
+    private int size;
+    // 队内键的下界与上界：所有元素的键都在 [cursor, top] 内
+    private int cursor;
+    private int top;
+
+    public BucketQueue(int capacity) {
+        this(capacity, 256);
+    }
+
+    /**
+     * @param buckets 初始桶数 (取不小于它的 2 的幂)，宜略大于最大边权
+     */
+    public BucketQueue(int capacity, int buckets) {
+        capacity = Math.max(1, capacity);
+        keys = new int[capacity];
+        next = new int[capacity];
+        prev = new int[capacity];
+        Arrays.fill(prev, ABSENT);
+        int n = Integer.highestOneBit(Math.max(2, buckets) * 2 - 1);
+        heads = new int[n];
+        Arrays.fill(heads, NONE);
+        mask = n - 1;
+    }
+
+    @Override
+    public void ensureCapacity(int n) {
+        if (n <= prev.length) return;
+        int old = prev.length;
+        int cap = Math.max(n, old * 2);
+        keys = Arrays.copyOf(keys, cap);
+        next = Arrays.copyOf(next, cap);
+        prev = Arrays.copyOf(prev, cap);
+        Arrays.fill(prev, old, cap, ABSENT);
+    }
+
+    @Override
+    public boolean isEmpty() { return size == 0; }
+    @Override
+    public int size() { return size; }
+    @Override
+    public boolean contains(int node) { return prev[node] != ABSENT; }
+
+    @Override
+    public int minKey() { return keys[peek()]; }
+
+    @Override
+    public int peek() {
+        // 把 cursor 推进到第一个非空桶
+        while (heads[cursor & mask] == NONE) cursor++;
+        return heads[cursor & mask];
+    }
+
+    @Override
+    public void push(int node, int key) {
+        if (prev[node] != ABSENT) {
+            if (key >= keys[node]) return;
+            unlink(node);
+        }
+        if (size == 0) {
+            cursor = top = key;
+        } else {
+            if (key < cursor) cursor = key;
+            if (key > top) top = key;
+            if (top - cursor > mask) grow(top - cursor);
+        }
+        keys[node] = key;
+        link(node, key & mask);
+        size++;
+    }
+
+    @Override
+    public int pop() {
+        int node = peek();
+        unlink(node);
+        prev[node] = ABSENT;
+        return node;
+    }
+
+    /** 清空队列，代价与当前键的跨度成正比 */
+    @Override
+    public void clear() {
+        if (size > 0) {
+            for (int k = cursor; k <= top; k++) {
+                int b = k & mask;
+                for (int v = heads[b]; v != NONE; v = next[v]) prev[v] = ABSENT;
+                heads[b] = NONE;
+            }
+        }
+        size = 0;
+    }
+
+    private void link(int node, int b) {
+        int h = heads[b];
+        next[node] = h;
+        prev[node] = NONE;
+        if (h != NONE) prev[h] = node;
+        heads[b] = node;
+    }
+
+    // 从所在桶摘下并计数减一 (之后 prev[node] 需由调用方重设)
+    private void unlink(int node) {
+        int p = prev[node], n = next[node];
+        if (p == NONE) heads[keys[node] & mask] = n;
+        else next[p] = n;
+        if (n != NONE) prev[n] = p;
+        size--;
+    }
+
+    // 桶数翻倍直到容纳跨度 span，并把元素重新分桶
+    private void grow(int span) {
+        int[] oldHeads = heads;
+        int oldMask = mask;
+        int n = oldHeads.length;
+        while (n <= span) n <<= 1;
+        heads = new int[n];
+        Arrays.fill(heads, NONE);
+        mask = n - 1;
+        // 旧桶中的元素 (新键尚未入桶) 逐个按新桶数重新分桶
+        for (int b = 0; b <= oldMask; b++) {
+            for (int v = oldHeads[b], nx; v != NONE; v = nx) {
+                nx = next[v];
+                link(v, keys[v] & mask);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package service;
+
+import model.*;
+import java.util.*;
+
+/**
+ * 连接扫描算法 (CSA)：从出发时刻起按时间顺序线性扫描连接表，
+ * 连接可乘 (已在该班次上，或能在出发站按时上车) 即尝试改进到达站的最早到达时间。
+ * 热路径只有数组顺序读取和少量比较，不使用堆。
+ */
+public final class ConnectionScanRouter {
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    private static final ThreadLocal<Labels> LOCAL = ThreadLocal.withInitial(Labels::new);
+
+    private ConnectionScanRouter() {}
+
+    /**
+     * 在 departure (当日分钟数) 从 source 出发前往 target 的最早到达行程，不可达返回 null
+     */
+    public static RouteResult search(ConnectionTable ct, int source, int target, int departure,
+                                     int strategy, String strategyName) {
+        CompiledGraph g = ct.timetable.base;
+        Labels l = LOCAL.get();
+        l.reset(g.stationCount(), ct.tripCount());
+        boolean[] allowedPattern = allowedPatterns(ct.timetable, strategy);
+
+        int[] depStop = ct.depStop, arrStop = ct.arrStop, depTime = ct.depTime, arrTime = ct.arrTime, trip = ct.trip;
+        l.arrival[source] = departure;
+        for (int c = ct.firstDepartingAt(departure), m = ct.size(); c < m; c++) {
+            int dep = depTime[c];
+            if (dep >= l.arrival[target]) break; // 之后的连接不可能更早到达
+            int t = trip[c];
+            if (l.boarded[t] < 0) {
+                // 上车：起点不计换乘罚时，其它站需留出换乘时间
+                int from = depStop[c];
+                int at = l.arrival[from];
+                if (at == UNREACHED) continue;
+                if (from != source) at += NavigationService.TRANSFER_PENALTY;
+                if (at > dep) continue;
+                if (allowedPattern != null && !allowedPattern[ct.tripPattern[t]]) continue;
+                l.boarded[t] = c;
+            }
+            int to = arrStop[c];
+            if (arrTime[c] < l.arrival[to]) {
+                l.arrival[to] = arrTime[c];
+                l.enter[to] = l.boarded[t];
+                l.exit[to] = c;
+            }
+        }
+        return l.arrival[target] == UNREACHED ? null : toRoute(ct, l, source, target, departure, strategyName);
+    }
+
+    // 只坐公交 / 只坐地铁时允许的模式，不限制时返回 null
+    private static boolean[] allowedPatterns(Timetable tt, int strategy) {
+        int modes = NavigationService.allowedModes(strategy);
+        if (modes == TransportMode.ALL) return null;
+        boolean[] allowed = new boolean[tt.patternCount()];
+        for (int p = 0; p < allowed.length; p++) allowed[p] = (tt.base.lineModes[tt.patternLine[p]] & modes) != 0;
+        return allowed;
+    }
+
+    /**
+     * 从终点沿 (上车连接, 下车连接) 逐段回溯
+     */
+    private static RouteResult toRoute(ConnectionTable ct, Labels l, int source, int target, int departure,
+                                       String strategyName) {
+        Timetable tt = ct.timetable;
+        CompiledGraph g = tt.base;
+        Deque<int[]> legs = new ArrayDeque<>();
+        for (int v = target; v != source; v = ct.depStop[l.enter[v]]) {
+            legs.addFirst(new int[]{ct.tripPattern[ct.trip[l.exit[v]]], ct.position[l.enter[v]], ct.position[l.exit[v]] + 1});
+        }
+
+        List<String> path = new ArrayList<>();
+        List<String> lineSegments = new ArrayList<>();
+        List<String> transferPoints = new ArrayList<>();
+        path.add(g.stationNames[source]);
+        for (int[] leg : legs) {
+            if (path.size() > 1) transferPoints.add(path.get(path.size() - 1));
+            String line = g.lineNames[tt.patternLine[leg[0]]];
+            for (int i = leg[1] + 1; i <= leg[2]; i++) {
+                path.add(g.stationNames[tt.patternStops[i]]);
+                lineSegments.add(line);
+            }
+        }
+        RouteResult result = new RouteResult(path, lineSegments, l.arrival[target] - departure,
+                legs.size() - 1, strategyName, transferPoints);
+        result.departureTime = departure;
+        result.arrivalTime = l.arrival[target];
+        return result;
+    }
+
+    /**
+     * 每个线程复用的标号数组
+     */
+    private static final class Labels {
+        int[] arrival = new int[0], enter = new int[0], exit = new int[0];
+        // 班次 -> 上车连接，未上车为 -1
+        int[] boarded = new int[0];
+
+        void reset(int n, int trips) {
+            if (arrival.length < n) {
+                arrival = new int[n];
+                enter = new int[n];
+                exit = new int[n];
+            }
+            if (boarded.length < trips) boarded = new int[trips];
+            Arrays.fill(arrival, 0, n, UNREACHED);
+            Arrays.fill(boarded, 0, trips, -1);
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package service;
+
+import model.*;
+import java.io.*;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * 状态图上的收缩层次 (Contraction Hierarchies)。
+ * 预处理按"边差"依次收缩节点并补充捷径边；查询时只需在上行图上做双向搜索，
+ * 访问的节点数与网络规模基本无关。捷径边记录两条子边，可展开回原始状态图路径。
+ * 预处理每一轮取一组互不相邻的节点并行收缩，结果可序列化为二进制文件。
+ */
+public final class ContractionHierarchy {
+    private static final int MAGIC = 0x43484731; // "CHG1"
+    // 见证搜索的出堆上限：超过后宁可多加一条捷径；估算优先级时用更小的上限
+    private static final int WITNESS_SETTLE_LIMIT = 256;
+    private static final int ESTIMATE_SETTLE_LIMIT = 16;
+
+    public final long fingerprint;
+    private final int[] rank;
+
+    // 上行图 (正向搜索)：节点 u 的出边为 [upOffsets[u], upOffsets[u+1])，终点 rank 更高
+    private final int[] upOffsets, upTargets, upWeights, upEdges;
+    // 下行图按终点存储 (反向搜索)：节点 v 的入边为 [downOffsets[v], downOffsets[v+1])，起点 rank 更高
+    private final int[] downOffsets, downSources, downWeights, downEdges;
+    // 边展开：捷径由 edgeFirst、edgeSecond 两条子边组成；原始边 edgeFirst = -1，edgeSecond 为状态图边编号
+    private final int[] edgeFirst, edgeSecond;
+
+    private ContractionHierarchy(long fingerprint, int[] rank,
+                                 int[] upOffsets, int[] upTargets, int[] upWeights, int[] upEdges,
+                                 int[] downOffsets, int[] downSources, int[] downWeights, int[] downEdges,
+                                 int[] edgeFirst, int[] edgeSecond) {
+        this.fingerprint = fingerprint;
+        this.rank = rank;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upEdges = upEdges;
+        this.downOffsets = downOffsets;
+        this.downSources = downSources;
+        this.downWeights = downWeights;
+        this.downEdges = downEdges;
+        this.edgeFirst = edgeFirst;
+        this.edgeSecond = edgeSecond;
+    }
+
+    public int nodeCount() { return rank.length; }
+    /** 全部边数 (原始边 + 捷径，含被替换的旧边) */
+    public int edgeCount() { return edgeFirst.length; }
+    public int shortcutCount() {
+        int c = 0;
+        for (int f : edgeFirst) if (f >= 0) c++;
+        return c;
+    }
+
+    /** 节点按重要性从高到低 (越晚收缩越重要) 排列，供中心点标签按层次顺序构建 */
+    int[] importanceOrder() {
+        int n = rank.length;
+        int[] order = new int[n];
+        for (int v = 0; v < n; v++) order[n - 1 - rank[v]] = v;
+        return order;
+    }
+
+    // ========== 查询 ==========
+
+    /**
+     * 双向上行搜索
+     * @return 相遇节点，不可达返回 -1；两侧路径 (CH 边编号) 保存在 fwd / bwd 的前驱数组中
+     */
+    public int search(LineStateGraph sg, int source, int target, SearchWorkspace fwd, SearchWorkspace bwd) {
+        int n = rank.length;
+        fwd.reset(n);
+        bwd.reset(n);
+        for (int s = sg.stationStates[source]; s < sg.stationStates[source + 1]; s++) {
+            fwd.label(s, 0, -1, -1);
+            fwd.heap.push(s, 0);
+        }
+        for (int s = sg.stationStates[target]; s < sg.stationStates[target + 1]; s++) {
+            bwd.label(s, 0, -1, -1);
+            bwd.heap.push(s, 0);
+        }
+
+        long best = Long.MAX_VALUE;
+        int meet = -1;
+        IntPriorityQueue fq = fwd.heap, bq = bwd.heap;
+        while (true) {
+            // 某一侧堆顶已不小于当前最优，则该侧不可能再改进
+            boolean forwardOpen = !fq.isEmpty() && fq.minKey() < best;
+            boolean backwardOpen = !bq.isEmpty() && bq.minKey() < best;
+            if (!forwardOpen && !backwardOpen) break;
+
+            if (forwardOpen && (!backwardOpen || fq.minKey() <= bq.minKey())) {
+                int cost = fq.minKey();
+                int u = fq.pop();
+                fwd.settle(u);
+                if (bwd.reached(u) && (long) cost + bwd.dist[u] < best) {
+                    best = (long) cost + bwd.dist[u];
+                    meet = u;
+                }
+                for (int i = upOffsets[u]; i < upOffsets[u + 1]; i++) {
+                    int v = upTargets[i];
+                    int newCost = cost + upWeights[i];
+                    if (newCost < fwd.dist(v)) {
+                        fwd.label(v, newCost, u, upEdges[i]);
+                        fq.push(v, newCost);
+                    }
+                }
+            } else {
+                int cost = bq.minKey();
+                int v = bq.pop();
+                bwd.settle(v);
+                if (fwd.reached(v) && (long) cost + fwd.dist[v] < best) {
+                    best = (long) cost + fwd.dist[v];
+                    meet = v;
+                }
+                for (int i = downOffsets[v]; i < downOffsets[v + 1]; i++) {
+                    int u = downSources[i];
+                    int newCost = cost + downWeights[i];
+                    if (newCost < bwd.dist(u)) {
+                        bwd.label(u, newCost, v, downEdges[i]);
+                        bq.push(u, newCost);
+                    }
+                }
+            }
+        }
+        return meet;
+    }
+
+    /**
+     * 展开捷径，生成与普通引擎相同格式的导航结果
+     */
+    public RouteResult buildResult(LineStateGraph sg, SearchWorkspace fwd, SearchWorkspace bwd,
+                                   int meet, String strategyName) {
+        // 1. 收集 CH 边：起点 -> 相遇点 -> 终点
+        int head = 0, tail = 0;
+        for (int s = meet; fwd.parent[s] >= 0; s = fwd.parent[s]) head++;
+        for (int s = meet; bwd.parent[s] >= 0; s = bwd.parent[s]) tail++;
+        int[] chEdges = new int[head + tail];
+        int first = meet;
+        for (int i = head - 1; i >= 0; i--) {
+            chEdges[i] = fwd.parentEdge[first];
+            first = fwd.parent[first];
+        }
+        int s = meet;
+        for (int i = head; i < head + tail; i++) {
+            chEdges[i] = bwd.parentEdge[s];
+            s = bwd.parent[s];
+        }
+
+        // 2. 逐条展开为原始状态图边
+        int[] path = fwd.pathBuffer(16);
+        int count = 0;
+        int[] stack = new int[16];
+        for (int chEdge : chEdges) {
+            int top = 0;
+            stack[top++] = chEdge;
+            while (top > 0) {
+                int e = stack[--top];
+                if (edgeFirst[e] < 0) {
+                    if (count == path.length) path = Arrays.copyOf(path, count * 2);
+                    path[count++] = edgeSecond[e];
+                } else {
+                    if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                    stack[top++] = edgeSecond[e];
+                    stack[top++] = edgeFirst[e];
+                }
+            }
+        }
+        return LineAwareRouter.toRoute(sg, first, path, count, strategyName);
+    }
+
+    // ========== 预处理 ==========
+
+    /**
+     * 在给定边权的状态图上构建收缩层次 (EXCLUDED 边不参与)
+     */
+    public static ContractionHierarchy build(LineStateGraph sg, int[] w) {
+        return new Builder(sg, w).run();
+    }
+
+    /**
+     * 优先读取与快照匹配的文件，否则重新构建并写回 (file 为 null 时不读写文件)
+     */
+    public static ContractionHierarchy loadOrBuild(LineStateGraph sg, int[] w, File file) {
+        long fingerprint = fingerprint(sg, w);
+        if (file != null) {
+            ContractionHierarchy loaded = load(file, fingerprint);
+            if (loaded != null) return loaded;
+        }
+        ContractionHierarchy built = build(sg, w);
+        if (file != null) built.save(file);
+        return built;
+    }
+
+    // 快照指纹 + 策略边权，保证文件只在图与策略都一致时被复用
+    static long fingerprint(LineStateGraph sg, int[] w) {
+        long h = sg.base.fingerprint();
+        for (int x : w) h = (h ^ x) * 0x100000001b3L;
+        return h;
+    }
+
+    private static final class Builder {
+        final int n;
+        final long fingerprint;
+        // 全部边 (原始 + 捷径)
+        int[] from = new int[64], to = new int[64], weight = new int[64], first = new int[64], second = new int[64];
+        int edges = 0;
+        // 工作图：每个节点的出边、入边编号
+        final int[][] out, in;
+        final int[] outSize, inSize;
+
+        final boolean[] contracted;
+        final int[] deletedNeighbors;
+        // 已收缩邻居中的最大层数 + 1，使收缩在图中均匀推进
+        final int[] level;
+        final int[] priority;
+        final int[] rank;
+
+        Builder(LineStateGraph sg, int[] w) {
+            n = sg.stateCount();
+            fingerprint = ContractionHierarchy.fingerprint(sg, w);
+            out = new int[n][];
+            in = new int[n][];
+            outSize = new int[n];
+            inSize = new int[n];
+            for (int v = 0; v < n; v++) {
+                out[v] = new int[4];
+                in[v] = new int[4];
+            }
+            contracted = new boolean[n];
+            deletedNeighbors = new int[n];
+            level = new int[n];
+            priority = new int[n];
+            rank = new int[n];
+            for (int s = 0; s < n; s++) {
+                for (int e = sg.offsets[s]; e < sg.offsets[s + 1]; e++) {
+                    if (w[e] == LineAwareRouter.EXCLUDED || sg.targets[e] == s) continue;
+                    addOrImprove(s, sg.targets[e], w[e], -1, e);
+                }
+            }
+        }
+
+        ContractionHierarchy run() {
+            // 初始优先级并行计算
+            IntStream.range(0, n).parallel().forEach(v -> priority[v] = edgeDifference(v));
+
+            List<Integer> remaining = new ArrayList<>(n);
+            for (int v = 0; v < n; v++) remaining.add(v);
+            int nextRank = 0;
+            while (!remaining.isEmpty()) {
+                // 1. 独立集：两跳邻域内优先级最小的节点
+                int[] batch = remaining.stream().mapToInt(Integer::intValue).filter(this::isLocalMinimum).toArray();
+
+                // 2. 先整体标记，再并行计算捷径 (见证路径因此不会经过同批节点)
+                for (int v : batch) contracted[v] = true;
+                int[][] shortcuts = new int[batch.length][];
+                IntStream.range(0, batch.length).parallel().forEach(i -> shortcuts[i] = shortcuts(batch[i], WITNESS_SETTLE_LIMIT));
+
+                // 3. 顺序写入捷径并更新邻居
+                Set<Integer> touched = new HashSet<>();
+                for (int i = 0; i < batch.length; i++) {
+                    int v = batch[i];
+                    rank[v] = nextRank++;
+                    int[] sc = shortcuts[i];
+                    for (int j = 0; j < sc.length; j += 4) {
+                        addOrImprove(sc[j], sc[j + 1], weight[sc[j + 2]] + weight[sc[j + 3]], sc[j + 2], sc[j + 3]);
+                    }
+                    detach(v, touched);
+                }
+                touched.parallelStream().forEach(x -> priority[x] = edgeDifference(x));
+                remaining.removeIf(v -> contracted[v]);
+            }
+            return assemble();
+        }
+
+        /**
+         * 将已收缩节点 v 的边从邻居的工作表中摘除：此后这些边只保留在 v 的表中，
+         * 恰好构成 v 指向更高层节点的上行/下行边，工作图也不会越搜越稠密
+         */
+        private void detach(int v, Set<Integer> touched) {
+            for (int k = 0; k < outSize[v]; k++) {
+                int e = out[v][k], x = to[e];
+                removeEdge(in, inSize, x, e);
+                deletedNeighbors[x]++;
+                level[x] = Math.max(level[x], level[v] + 1);
+                touched.add(x);
+            }
+            for (int k = 0; k < inSize[v]; k++) {
+                int e = in[v][k], u = from[e];
+                removeEdge(out, outSize, u, e);
+                deletedNeighbors[u]++;
+                level[u] = Math.max(level[u], level[v] + 1);
+                touched.add(u);
+            }
+        }
+
+        /**
+         * 在两跳邻域内优先级最小：同批节点互不相邻，且相互间距离至少为 3，
+         * 短的见证路径 (如站内换乘三角) 不会因同批节点被提前标记而丢失
+         */
+        private boolean isLocalMinimum(int v) {
+            for (int k = 0; k < outSize[v]; k++) {
+                int x = to[out[v][k]];
+                if (!before(v, x) || !beforeNeighbours(v, x)) return false;
+            }
+            for (int k = 0; k < inSize[v]; k++) {
+                int u = from[in[v][k]];
+                if (!before(v, u) || !beforeNeighbours(v, u)) return false;
+            }
+            return true;
+        }
+
+        private boolean beforeNeighbours(int v, int x) {
+            for (int k = 0; k < outSize[x]; k++) if (!before(v, to[out[x][k]])) return false;
+            for (int k = 0; k < inSize[x]; k++) if (!before(v, from[in[x][k]])) return false;
+            return true;
+        }
+
+        // v 是否应先于邻居 x 收缩 (已收缩的邻居不参与比较)
+        private boolean before(int v, int x) {
+            if (x == v || contracted[x]) return true;
+            return priority[v] < priority[x] || (priority[v] == priority[x] && v < x);
+        }
+
+        private int edgeDifference(int v) {
+            int added = shortcuts(v, ESTIMATE_SETTLE_LIMIT).length / 4;
+            int removed = 0;
+            for (int k = 0; k < outSize[v]; k++) if (!contracted[to[out[v][k]]]) removed++;
+            for (int k = 0; k < inSize[v]; k++) if (!contracted[from[in[v][k]]]) removed++;
+            return 2 * (added - removed) + deletedNeighbors[v] + 2 * level[v];
+        }
+
+        /**
+         * 收缩 v 所需的捷径，四元组 (起点, 终点, 入边, 出边) 依次排列
+         */
+        private int[] shortcuts(int v, int settleLimit) {
+            int[] result = new int[0];
+            int size = 0;
+            SearchWorkspace ws = SearchWorkspace.local();
+            for (int a = 0; a < inSize[v]; a++) {
+                int inEdge = in[v][a];
+                int u = from[inEdge];
+                if (contracted[u]) continue;
+                int limit = -1;
+                for (int b = 0; b < outSize[v]; b++) {
+                    int x = to[out[v][b]];
+                    if (x != u && !contracted[x]) limit = Math.max(limit, weight[inEdge] + weight[out[v][b]]);
+                }
+                if (limit < 0) continue;
+                witnessSearch(ws, u, v, limit, settleLimit);
+                for (int b = 0; b < outSize[v]; b++) {
+                    int outEdge = out[v][b];
+                    int x = to[outEdge];
+                    if (x == u || contracted[x]) continue;
+                    int via = weight[inEdge] + weight[outEdge];
+                    if (ws.dist(x) <= via) continue; // 存在不经过 v 的见证路径
+                    if (size + 4 > result.length) result = Arrays.copyOf(result, Math.max(16, result.length * 2));
+                    result[size++] = u;
+                    result[size++] = x;
+                    result[size++] = inEdge;
+                    result[size++] = outEdge;
+                }
+            }
+            return Arrays.copyOf(result, size);
+        }
+
+        // 从 u 出发、不经过 v 且只经过未收缩节点的有限 Dijkstra
+        private void witnessSearch(SearchWorkspace ws, int u, int v, int limit, int settleLimit) {
+            ws.reset(n);
+            ws.label(u, 0, -1, -1);
+            ws.heap.push(u, 0);
+            int settled = 0;
+            while (!ws.heap.isEmpty() && settled++ < settleLimit) {
+                int cost = ws.heap.minKey();
+                if (cost > limit) break;
+                int y = ws.heap.pop();
+                for (int k = 0; k < outSize[y]; k++) {
+                    int e = out[y][k];
+                    int z = to[e];
+                    if (z == v || contracted[z]) continue;
+                    int newCost = cost + weight[e];
+                    if (newCost < ws.dist(z)) {
+                        ws.label(z, newCost, y, e);
+                        ws.heap.push(z, newCost);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 加入 u -> x 的边；已有更短或等长的边时忽略，否则以新边替换旧边
+         */
+        private void addOrImprove(int u, int x, int w, int firstEdge, int secondEdge) {
+            for (int k = 0; k < outSize[u]; k++) {
+                int e = out[u][k];
+                if (to[e] != x) continue;
+                if (weight[e] <= w) return;
+                // 替换：旧边可能是其它捷径的子边，因此不原地修改
+                removeAt(out, outSize, u, k);
+                removeEdge(in, inSize, x, e);
+                break;
+            }
+            if (edges == from.length) {
+                int cap = edges * 2;
+                from = Arrays.copyOf(from, cap);
+                to = Arrays.copyOf(to, cap);
+                weight = Arrays.copyOf(weight, cap);
+                first = Arrays.copyOf(first, cap);
+                second = Arrays.copyOf(second, cap);
+            }
+            int e = edges++;
+            from[e] = u;
+            to[e] = x;
+            weight[e] = w;
+            first[e] = firstEdge;
+            second[e] = secondEdge;
+            append(out, outSize, u, e);
+            append(in, inSize, x, e);
+        }
+
+        private static void append(int[][] lists, int[] sizes, int v, int e) {
+            if (sizes[v] == lists[v].length) lists[v] = Arrays.copyOf(lists[v], lists[v].length * 2);
+            lists[v][sizes[v]++] = e;
+        }
+
+        private static void removeAt(int[][] lists, int[] sizes, int v, int k) {
+            lists[v][k] = lists[v][--sizes[v]];
+        }
+
+        private static void removeEdge(int[][] lists, int[] sizes, int v, int e) {
+            for (int k = 0; k < sizes[v]; k++) {
+                if (lists[v][k] == e) { removeAt(lists, sizes, v, k); return; }
+            }
+        }
+
+        /**
+         * 每个节点工作表中剩下的边都指向更高层节点：出边构成上行图，入边构成 (按终点存储的) 下行图
+         */
+        private ContractionHierarchy assemble() {
+            int[] upOffsets = new int[n + 1], downOffsets = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                upOffsets[v + 1] = upOffsets[v] + outSize[v];
+                downOffsets[v + 1] = downOffsets[v] + inSize[v];
+            }
+            int[] upTargets = new int[upOffsets[n]], upWeights = new int[upOffsets[n]], upEdges = new int[upOffsets[n]];
+            int[] downSources = new int[downOffsets[n]], downWeights = new int[downOffsets[n]], downEdges = new int[downOffsets[n]];
+            for (int v = 0; v < n; v++) {
+                for (int k = 0; k < outSize[v]; k++) {
+                    int e = out[v][k], slot = upOffsets[v] + k;
+                    upTargets[slot] = to[e];
+                    upWeights[slot] = weight[e];
+                    upEdges[slot] = e;
+                }
+                for (int k = 0; k < inSize[v]; k++) {
+                    int e = in[v][k], slot = downOffsets[v] + k;
+                    downSources[slot] = from[e];
+                    downWeights[slot] = weight[e];
+                    downEdges[slot] = e;
+                }
+            }
+            return new ContractionHierarchy(fingerprint, rank,
+                    upOffsets, upTargets, upWeights, upEdges,
+                    downOffsets, downSources, downWeights, downEdges,
+                    Arrays.copyOf(first, edges), Arrays.copyOf(second, edges));
+        }
+    }
+
+    // ========== 持久化 ==========
+
+    public void save(File file) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(fingerprint);
+            for (int[] a : new int[][]{rank, upOffsets, upTargets, upWeights, upEdges,
+                    downOffsets, downSources, downWeights, downEdges, edgeFirst, edgeSecond}) {
+                out.writeInt(a.length);
+                for (int x : a) out.writeInt(x);
+            }
+        } catch (IOException e) {
+            System.err.println("收缩层次文件保存失败: " + e.getMessage());
+        }
+    }
+
+    /** 读取文件；不存在、损坏或指纹不匹配时返回 null */
+    public static ContractionHierarchy load(File file, long fingerprint) {
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readLong() != fingerprint) return null;
+            int[][] a = new int[11][];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = new int[in.readInt()];
+                for (int j = 0; j < a[i].length; j++) a[i][j] = in.readInt();
+            }
+            return new ContractionHierarchy(fingerprint, a[0], a[1], a[2], a[3], a[4],
+                    a[5], a[6], a[7], a[8], a[9], a[10]);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
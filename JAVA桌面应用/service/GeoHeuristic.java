@@ -0,0 +1,115 @@
+package service;
+
+import model.*;
+import java.util.*;
+
+/**
+ * A* 的地理下界：站点到终点的直线距离 ÷ 全网最快的"距离/代价"比。
+ * 任一区间的直线距离都不超过 最快比 × 该区间代价，因此估价不会高估剩余代价 (可采纳且一致)。
+ * 站点或终点缺少坐标时该站估价为 0；途经无坐标站点的路段按其两端有坐标站点之间的最短代价计入最快比，
+ * 因此个别站点缺少坐标不会使整个网络退化为普通 Dijkstra。
+ */
+public final class GeoHeuristic implements Heuristic {
+    private static final String[] KEYS = {"geo:0", "geo:1", "geo:2", "geo:3"};
+
+    private final CompiledGraph g;
+    // 每单位直线距离对应的最小代价，0 表示估价恒为 0
+    private final double costPerDistance;
+
+    private GeoHeuristic(CompiledGraph g, double costPerDistance) {
+        this.g = g;
+        this.costPerDistance = costPerDistance;
+    }
+
+    /** 按快照与策略缓存的估价器 */
+    public static GeoHeuristic of(CompiledGraph g, int strategy) {
+        String key = strategy >= 0 && strategy < KEYS.length ? KEYS[strategy] : "geo:" + strategy;
+        return g.derived(key, cg -> build(cg, LineAwareRouter.weights(cg, strategy)));
+    }
+
+    public boolean enabled() { return costPerDistance > 0; }
+
+    @Override
+    public int estimate(int v, int target) {
+        if (costPerDistance == 0 || !g.hasCoord(v) || !g.hasCoord(target)) return 0;
+        double dx = g.coordX[v] - g.coordX[target];
+        double dy = g.coordY[v] - g.coordY[target];
+        // 略微向下取整，避免浮点误差造成高估
+        int h = (int) (Math.sqrt(dx * dx + dy * dy) * costPerDistance - 1e-6);
+        return Math.max(h, 0);
+    }
+
+    private static GeoHeuristic build(CompiledGraph g, int[] w) {
+        LineStateGraph sg = g.lineStates();
+        // 全网最快的 直线距离/代价 比：有坐标站点之间的区间直接计算，
+        // 途经无坐标站点的区间按两端有坐标站点之间只经过无坐标站点的最短代价计算
+        double maxSpeed = 0;
+        int n = g.stationCount();
+        int[] dist = null;
+        for (int u = 0; u < n; u++) {
+            if (!g.hasCoord(u)) continue;
+            boolean bridges = false;
+            for (int s = sg.stationStates[u]; s < sg.stationStates[u + 1]; s++) {
+                for (int e = sg.offsets[s]; e < sg.offsets[s + 1]; e++) {
+                    if (sg.isTransfer(e) || w[e] == LineAwareRouter.EXCLUDED) continue;
+                    int v = sg.stateStation[sg.targets[e]];
+                    if (!g.hasCoord(v)) { bridges = true; continue; }
+                    double d = distance(g, u, v);
+                    if (d == 0) continue;
+                    if (w[e] == 0) return new GeoHeuristic(g, 0); // 零代价区间：无法给出正下界
+                    maxSpeed = Math.max(maxSpeed, d / w[e]);
+                }
+            }
+            if (!bridges) continue;
+            if (dist == null) dist = new int[n];
+            double speed = bridgeSpeed(g, sg, w, u, dist);
+            if (speed < 0) return new GeoHeuristic(g, 0);
+            maxSpeed = Math.max(maxSpeed, speed);
+        }
+        return new GeoHeuristic(g, maxSpeed > 0 ? 1.0 / maxSpeed : 0);
+    }
+
+    /**
+     * 从有坐标的站点 u 出发、只经过无坐标站点的 Dijkstra (忽略换乘，只会低估代价)，
+     * 返回到达各有坐标站点的最大 直线距离/代价 比；遇到零代价且有距离的区间时返回 -1
+     */
+    private static double bridgeSpeed(CompiledGraph g, LineStateGraph sg, int[] w, int u, int[] dist) {
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        PriorityQueue<long[]> pq = new PriorityQueue<>(Comparator.comparingLong(a -> a[0]));
+        dist[u] = 0;
+        pq.add(new long[]{0, u});
+        double maxSpeed = 0;
+        while (!pq.isEmpty()) {
+            long[] top = pq.poll();
+            int x = (int) top[1];
+            if (top[0] > dist[x]) continue;
+            if (x != u && g.hasCoord(x)) {
+                // 到达另一个有坐标的站点，该段结束，不再继续扩展
+                double d = distance(g, u, x);
+                if (d > 0) {
+                    if (dist[x] == 0) return -1;
+                    maxSpeed = Math.max(maxSpeed, d / dist[x]);
+                }
+                continue;
+            }
+            for (int s = sg.stationStates[x]; s < sg.stationStates[x + 1]; s++) {
+                for (int e = sg.offsets[s]; e < sg.offsets[s + 1]; e++) {
+                    if (sg.isTransfer(e) || w[e] == LineAwareRouter.EXCLUDED) continue;
+                    int v = sg.stateStation[sg.targets[e]];
+                    // 起点出发只走向无坐标站点，有坐标的直达区间已在外层计算
+                    if (x == u && g.hasCoord(v)) continue;
+                    int nd = dist[x] + w[e];
+                    if (nd < dist[v]) {
+                        dist[v] = nd;
+                        pq.add(new long[]{nd, v});
+                    }
+                }
+            }
+        }
+        return maxSpeed;
+    }
+
+    private static double distance(CompiledGraph g, int u, int v) {
+        return Math.hypot(g.coordX[u] - g.coordX[v], g.coordY[u] - g.coordY[v]);
+    }
+}
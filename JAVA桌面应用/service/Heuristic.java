@@ -0,0 +1,8 @@
+package service;
+
+/**
+ * A* 估价函数：站点到终点剩余代价的下界 (不得高估)
+ */
+public interface Heuristic {
+    int estimate(int station, int target);
+}
@@ -0,0 +1,319 @@
+package service;
+
+import model.*;
+import java.io.*;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * 中心点标签 (Hub Labeling)：为每个站点预先记录出标签 (hub, 站点到 hub 的耗时) 与入标签 (hub, hub 到站点的耗时)，
+ * 两站耗时 = 起点出标签与终点入标签中公共 hub 的耗时和的最小值，只需归并两个有序数组，不做任何搜索。
+ * 构建采用剪枝路标标注 (PLL)：按收缩层次的重要性顺序依次以每个状态为 hub 做正反向 Dijkstra，
+ * 已能由现有标签给出同等耗时的节点被剪掉。按批并行：同批 hub 只用之前批次的标签剪枝，结果仍然精确。
+ * 状态级标签按站点合并 (同一 hub 取最小耗时) 后以扁平数组保存，可序列化为二进制文件。
+ */
+public final class HubLabels {
+    private static final int MAGIC = 0x48554231; // "HUB1"
+    // 每批并行处理的 hub 数上限；越靠前的 hub 剪枝作用越大，批次从 1 开始逐步增大
+    private static final int MAX_BATCH = 64;
+
+    private static final ThreadLocal<SearchWorkspace> WORKSPACE = ThreadLocal.withInitial(SearchWorkspace::new);
+
+    public final long fingerprint;
+    // 站点 v 的出标签为 [outOffsets[v], outOffsets[v+1])，按 hub 升序；入标签同理
+    private final int[] outOffsets, outHubs, outDists;
+    private final int[] inOffsets, inHubs, inDists;
+
+    private HubLabels(long fingerprint, int[] outOffsets, int[] outHubs, int[] outDists,
+                      int[] inOffsets, int[] inHubs, int[] inDists) {
+        this.fingerprint = fingerprint;
+        this.outOffsets = outOffsets;
+        this.outHubs = outHubs;
+        this.outDists = outDists;
+        this.inOffsets = inOffsets;
+        this.inHubs = inHubs;
+        this.inDists = inDists;
+    }
+
+    public int stationCount() { return outOffsets.length - 1; }
+
+    // ========== 查询 ==========
+
+    /**
+     * 站点 source 到 target 的最短耗时 (含换乘罚时)，不可达返回 SearchWorkspace.INF
+     */
+    public int travelTime(int source, int target) {
+        if (source == target) return 0;
+        int i = outOffsets[source], iEnd = outOffsets[source + 1];
+        int j = inOffsets[target], jEnd = inOffsets[target + 1];
+        int best = SearchWorkspace.INF;
+        while (i < iEnd && j < jEnd) {
+            int a = outHubs[i], b = inHubs[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                best = Math.min(best, outDists[i++] + inDists[j++]);
+            }
+        }
+        return best;
+    }
+
+    // ========== 统计 ==========
+
+    /** 标签项总数 (出标签 + 入标签) */
+    public long entryCount() { return (long) outHubs.length + inHubs.length; }
+
+    /** 扁平数组占用的字节数 */
+    public long memoryBytes() {
+        return 4L * (outOffsets.length + outHubs.length + outDists.length
+                + inOffsets.length + inHubs.length + inDists.length);
+    }
+
+    /** 标签规模与内存报告 */
+    public String report() {
+        int n = stationCount();
+        int maxOut = 0, maxIn = 0;
+        for (int v = 0; v < n; v++) {
+            maxOut = Math.max(maxOut, outOffsets[v + 1] - outOffsets[v]);
+            maxIn = Math.max(maxIn, inOffsets[v + 1] - inOffsets[v]);
+        }
+        return String.format("中心点标签: %d 站, 出标签平均 %.1f 项 (最多 %d), 入标签平均 %.1f 项 (最多 %d), 共 %d 项, 约 %.1f KB",
+                n, (double) outHubs.length / Math.max(n, 1), maxOut, (double) inHubs.length / Math.max(n, 1), maxIn,
+                entryCount(), memoryBytes() / 1024.0);
+    }
+
+    // ========== 预处理 ==========
+
+    /**
+     * 在给定边权 (耗时) 的状态图上构建标签，hub 顺序取收缩层次的重要性顺序
+     */
+    public static HubLabels build(LineStateGraph sg, int[] w, ContractionHierarchy ch) {
+        return new Builder(sg, w, ch.importanceOrder()).run();
+    }
+
+    /**
+     * 优先读取与快照匹配的文件，否则重新构建 (需要时才计算收缩层次) 并写回；file 为 null 时不读写文件
+     */
+    public static HubLabels loadOrBuild(LineStateGraph sg, int[] w, Supplier<ContractionHierarchy> ch, File file) {
+        long fingerprint = ContractionHierarchy.fingerprint(sg, w);
+        if (file != null) {
+            HubLabels loaded = load(file, fingerprint);
+            if (loaded != null && loaded.stationCount() == sg.base.stationCount()) return loaded;
+        }
+        HubLabels built = build(sg, w, ch.get());
+        if (file != null) built.save(file);
+        return built;
+    }
+
+    private static final class Builder {
+        final LineStateGraph sg;
+        final int[] w;
+        final int[] order;
+        final int n;
+        // 状态级标签：hub 为其在 order 中的位置，按构建顺序追加即有序
+        final int[][] outHub, outDist, inHub, inDist;
+        final int[] outSize, inSize;
+        // 每个线程的剪枝查询缓冲：hub 位置 -> 当前 hub 标签中的耗时
+        final ThreadLocal<int[]> scratch;
+
+        Builder(LineStateGraph sg, int[] w, int[] order) {
+            this.sg = sg;
+            this.w = w;
+            this.order = order;
+            n = sg.stateCount();
+            outHub = new int[n][];
+            outDist = new int[n][];
+            inHub = new int[n][];
+            inDist = new int[n][];
+            for (int v = 0; v < n; v++) {
+                outHub[v] = new int[2];
+                outDist[v] = new int[2];
+                inHub[v] = new int[2];
+                inDist[v] = new int[2];
+            }
+            outSize = new int[n];
+            inSize = new int[n];
+            scratch = ThreadLocal.withInitial(() -> {
+                int[] a = new int[n];
+                Arrays.fill(a, SearchWorkspace.INF);
+                return a;
+            });
+        }
+
+        HubLabels run() {
+            int batch = 1;
+            for (int start = 0; start < n; start += batch) {
+                batch = Math.min(MAX_BATCH, Math.max(1, start / 8));
+                int from = start, to = Math.min(n, start + batch);
+                // 同批 hub 并行搜索，只读已有标签；新标签随后按 hub 顺序追加
+                int[][][] found = new int[to - from][][];
+                IntStream.range(from, to).parallel().forEach(p -> found[p - from] = new int[][]{
+                        prunedSearch(p, true), prunedSearch(p, false)});
+                for (int p = from; p < to; p++) {
+                    int[][] f = found[p - from];
+                    for (int k = 0; k < f[0].length; k += 2) append(inHub, inDist, inSize, f[0][k], p, f[0][k + 1]);
+                    for (int k = 0; k < f[1].length; k += 2) append(outHub, outDist, outSize, f[1][k], p, f[1][k + 1]);
+                }
+            }
+            return assemble();
+        }
+
+        /**
+         * 以 order[p] 为 hub 的剪枝 Dijkstra：正向求 hub 到各状态的耗时 (产生入标签)，
+         * 反向求各状态到 hub 的耗时 (产生出标签)
+         * @return 需要新增标签的 (状态, 耗时) 对
+         */
+        private int[] prunedSearch(int p, boolean forward) {
+            int hub = order[p];
+            int[] hubDist = scratch.get();
+            // 剪枝查询的一侧固定为 hub 自己的标签
+            int[][] ownHub = forward ? outHub : inHub, ownDist = forward ? outDist : inDist;
+            int[] ownSize = forward ? outSize : inSize;
+            int[][] otherHub = forward ? inHub : outHub, otherDist = forward ? inDist : outDist;
+            int[] otherSize = forward ? inSize : outSize;
+            for (int k = 0; k < ownSize[hub]; k++) hubDist[ownHub[hub][k]] = ownDist[hub][k];
+
+            SearchWorkspace ws = WORKSPACE.get();
+            ws.reset(n);
+            IntPriorityQueue pq = ws.heap;
+            ws.label(hub, 0, -1, -1);
+            pq.push(hub, 0);
+            int[] result = new int[8];
+            int count = 0;
+            while (!pq.isEmpty()) {
+                int d = pq.minKey();
+                int v = pq.pop();
+                ws.settle(v);
+                // 已有标签能给出不超过 d 的耗时：该节点及其后继都无需本 hub
+                boolean covered = false;
+                for (int k = 0, size = otherSize[v]; k < size; k++) {
+                    int via = hubDist[otherHub[v][k]];
+                    if (via != SearchWorkspace.INF && via + otherDist[v][k] <= d) {
+                        covered = true;
+                        break;
+                    }
+                }
+                if (covered) continue;
+                if (count + 2 > result.length) result = Arrays.copyOf(result, result.length * 2);
+                result[count++] = v;
+                result[count++] = d;
+
+                if (forward) {
+                    for (int e = sg.offsets[v], stop = sg.offsets[v + 1]; e < stop; e++) {
+                        if (w[e] == LineAwareRouter.EXCLUDED) continue;
+                        relax(ws, sg.targets[e], d + w[e]);
+                    }
+                } else {
+                    for (int i = sg.inOffsets[v], stop = sg.inOffsets[v + 1]; i < stop; i++) {
+                        int weight = w[sg.inEdges[i]];
+                        if (weight == LineAwareRouter.EXCLUDED) continue;
+                        relax(ws, sg.inSources[i], d + weight);
+                    }
+                }
+            }
+            for (int k = 0; k < ownSize[hub]; k++) hubDist[ownHub[hub][k]] = SearchWorkspace.INF;
+            return Arrays.copyOf(result, count);
+        }
+
+        private static void relax(SearchWorkspace ws, int next, int newCost) {
+            if (ws.settled(next) || newCost >= ws.dist(next)) return;
+            ws.label(next, newCost, -1, -1);
+            ws.heap.push(next, newCost);
+        }
+
+        private static void append(int[][] hubs, int[][] dists, int[] sizes, int v, int hub, int dist) {
+            int s = sizes[v];
+            if (s == hubs[v].length) {
+                hubs[v] = Arrays.copyOf(hubs[v], s * 2);
+                dists[v] = Arrays.copyOf(dists[v], s * 2);
+            }
+            hubs[v][s] = hub;
+            dists[v][s] = dist;
+            sizes[v] = s + 1;
+        }
+
+        /**
+         * 按站点合并其全部状态的标签：起点可从任一状态出发、终点可在任一状态到达，
+         * 因此同一 hub 取各状态中的最小耗时即可
+         */
+        private HubLabels assemble() {
+            int stations = sg.base.stationCount();
+            int[][] out = mergeByStation(stations, outHub, outDist, outSize);
+            int[][] in = mergeByStation(stations, inHub, inDist, inSize);
+            return new HubLabels(ContractionHierarchy.fingerprint(sg, w), out[0], out[1], out[2], in[0], in[1], in[2]);
+        }
+
+        private int[][] mergeByStation(int stations, int[][] hubs, int[][] dists, int[] sizes) {
+            int[] offsets = new int[stations + 1];
+            int[] best = new int[n];
+            Arrays.fill(best, SearchWorkspace.INF);
+            int[] used = new int[16];
+            List<int[]> merged = new ArrayList<>(stations);
+            for (int v = 0; v < stations; v++) {
+                int count = 0;
+                for (int s = sg.stationStates[v]; s < sg.stationStates[v + 1]; s++) {
+                    for (int k = 0; k < sizes[s]; k++) {
+                        int h = hubs[s][k];
+                        if (best[h] == SearchWorkspace.INF) {
+                            if (count == used.length) used = Arrays.copyOf(used, count * 2);
+                            used[count++] = h;
+                        }
+                        best[h] = Math.min(best[h], dists[s][k]);
+                    }
+                }
+                Arrays.sort(used, 0, count);
+                int[] entry = new int[count * 2];
+                for (int k = 0; k < count; k++) {
+                    entry[2 * k] = used[k];
+                    entry[2 * k + 1] = best[used[k]];
+                    best[used[k]] = SearchWorkspace.INF;
+                }
+                merged.add(entry);
+                offsets[v + 1] = offsets[v] + count;
+            }
+            int[] flatHubs = new int[offsets[stations]], flatDists = new int[offsets[stations]];
+            for (int v = 0; v < stations; v++) {
+                int[] entry = merged.get(v);
+                for (int k = 0; k < entry.length / 2; k++) {
+                    flatHubs[offsets[v] + k] = entry[2 * k];
+                    flatDists[offsets[v] + k] = entry[2 * k + 1];
+                }
+            }
+            return new int[][]{offsets, flatHubs, flatDists};
+        }
+    }
+
+    // ========== 持久化 ==========
+
+    public void save(File file) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(fingerprint);
+            for (int[] a : new int[][]{outOffsets, outHubs, outDists, inOffsets, inHubs, inDists}) {
+                out.writeInt(a.length);
+                for (int x : a) out.writeInt(x);
+            }
+        } catch (IOException e) {
+            System.err.println("中心点标签文件保存失败: " + e.getMessage());
+        }
+    }
+
+    /** 读取文件；不存在、损坏或指纹不匹配时返回 null */
+    public static HubLabels load(File file, long fingerprint) {
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readLong() != fingerprint) return null;
+            int[][] a = new int[6][];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = new int[in.readInt()];
+                for (int j = 0; j < a[i].length; j++) a[i][j] = in.readInt();
+            }
+            return new HubLabels(fingerprint, a[0], a[1], a[2], a[3], a[4], a[5]);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package service;
+
+import java.util.Arrays;
+
+/**
+ * 以整数编号为元素、整数为键的索引二叉堆，支持 decrease-key。
+ * 每个元素在堆中至多出现一次，不再像 PriorityQueue 那样堆积过期条目。
+ */
+public final class IndexedMinHeap implements IntPriorityQueue {
+    private int[] nodes;  // 堆数组：元素编号
+    private int[] keys;   // 堆数组：对应的键
+    private int[] pos;    // 元素编号 -> 堆中下标，-1 表示不在堆中
+    private int size;
+
+    public IndexedMinHeap(int capacity) {
+        capacity = Math.max(1, capacity);
+        nodes = new int[capacity];
+        keys = new int[capacity];
+        pos = new int[capacity];
+        Arrays.fill(pos, -1);
+    }
+
+    /** 保证元素编号 0..n-1 都可入堆 */
+    @Override
+    public void ensureCapacity(int n) {
+        if (n <= pos.length) return;
+        int old = pos.length;
+        int cap = Math.max(n, old * 2);
+        nodes = Arrays.copyOf(nodes, cap);
+        keys = Arrays.copyOf(keys, cap);
+        pos = Arrays.copyOf(pos, cap);
+        Arrays.fill(pos, old, cap, -1);
+    }
+
+    @Override
+    public boolean isEmpty() { return size == 0; }
+    @Override
+    public int size() { return size; }
+    @Override
+    public boolean contains(int node) { return pos[node] >= 0; }
+
+    /** 堆顶元素的键 */
+    @Override
+    public int minKey() { return keys[0]; }
+    /** 堆顶元素 */
+    @Override
+    public int peek() { return nodes[0]; }
+
+    /**
+     * 插入元素；若已在堆中且新键更小，则执行 decrease-key
+     */
+    @Override
+    public void push(int node, int key) {
+        int i = pos[node];
+        if (i < 0) {
+            i = size++;
+        } else if (key >= keys[i]) {
+            return;
+        }
+        siftUp(i, node, key);
+    }
+
+    /** 弹出并返回键最小的元素 */
+    @Override
+    public int pop() {
+        int top = nodes[0];
+        pos[top] = -1;
+        if (--size > 0) siftDown(0, nodes[size], keys[size]);
+        return top;
+    }
+
+    /** 清空堆，代价与当前堆大小成正比 */
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) pos[nodes[i]] = -1;
+        size = 0;
+    }
+
+    private void siftUp(int i, int node, int key) {
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (keys[p] <= key) break;
+            nodes[i] = nodes[p];
+            keys[i] = keys[p];
+            pos[nodes[i]] = i;
+            i = p;
+        }
+        nodes[i] = node;
+        keys[i] = key;
+        pos[node] = i;
+    }
+
+    private void siftDown(int i, int node, int key) {
+        int half = size >>> 1;
+        while (i < half) {
+            int c = 2 * i + 1;
+            if (c + 1 < size && keys[c + 1] < keys[c]) c++;
+            if (key <= keys[c]) break;
+            nodes[i] = nodes[c];
+            keys[i] = keys[c];
+            pos[nodes[i]] = i;
+            i = c;
+        }
+        nodes[i] = node;
+        keys[i] = key;
+        pos[node] = i;
+    }
+}
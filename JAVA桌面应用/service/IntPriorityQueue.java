@@ -0,0 +1,28 @@
+package service;
+
+/**
+ * 以整数编号为元素、整数为键的优先队列，支持 decrease-key。
+ * 每个元素在队列中至多出现一次；实现见 {@link IndexedMinHeap} 与 {@link BucketQueue}。
+ */
+public interface IntPriorityQueue {
+    /** 保证元素编号 0..n-1 都可入队 */
+    void ensureCapacity(int n);
+
+    boolean isEmpty();
+    int size();
+    boolean contains(int node);
+
+    /** 最小的键 */
+    int minKey();
+    /** 键最小的元素 */
+    int peek();
+
+    /** 插入元素；若已在队列中且新键更小，则执行 decrease-key */
+    void push(int node, int key);
+
+    /** 弹出并返回键最小的元素 */
+    int pop();
+
+    /** 清空队列 */
+    void clear();
+}
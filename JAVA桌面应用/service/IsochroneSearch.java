@@ -0,0 +1,118 @@
+package service;
+
+import model.*;
+import java.util.*;
+
+/**
+ * 等时圈：从一个起点出发，在给定分钟数内可达的全部站点及其到达时间。
+ * 搜索是有界的——只出堆代价不超过预算的状态，堆中剩余的状态即为"前沿"；
+ * 预算增大时从前沿继续扩展，预算减小时直接截取已确定站点的前缀，都不必从头搜索。
+ * 每个对象持有自己的工作区，只对应一个图快照、起点和策略。
+ */
+public final class IsochroneSearch {
+    public final CompiledGraph snapshot;
+    public final int origin;
+    public final int strategy;
+
+    private final LineStateGraph sg;
+    private final int[] weights;
+    private final SearchWorkspace ws = new SearchWorkspace();
+
+    // 已确定的站点，按到达时间先后排列
+    private int[] order;
+    private int[] orderTime;
+    private int reachedCount;
+    // 站点 -> 到达时间，未确定为 -1
+    private final int[] stationTime;
+    // 已搜索完的预算 (分钟)
+    private int radius = -1;
+
+    /**
+     * @param strategy 以耗时为代价的策略 (TIME / BUS_ONLY / METRO_ONLY)
+     */
+    IsochroneSearch(CompiledGraph g, int origin, int strategy) {
+        this.snapshot = g;
+        this.origin = origin;
+        this.strategy = strategy;
+        this.sg = g.lineStates();
+        this.weights = LineAwareRouter.weights(g, strategy);
+        int n = g.stationCount();
+        this.order = new int[Math.min(n, 64)];
+        this.orderTime = new int[order.length];
+        this.stationTime = new int[n];
+        Arrays.fill(stationTime, -1);
+
+        ws.reset(sg.stateCount());
+        for (int s = sg.stationStates[origin]; s < sg.stationStates[origin + 1]; s++) {
+            ws.label(s, 0, -1, -1);
+            ws.heap.push(s, 0);
+        }
+        record(origin, 0);
+    }
+
+    /** 搜索是否仍对应 graph 的当前版本 */
+    public boolean isCurrent(TransportGraph graph) {
+        return graph.getVersion() == snapshot.version;
+    }
+
+    /** 已搜索完的预算 (分钟) */
+    public synchronized int radius() { return radius; }
+
+    /**
+     * minutes 分钟内可达的站点 -> 到达时间 (含换乘罚时)，按到达先后排列
+     */
+    public synchronized Map<String, Integer> within(int minutes) {
+        int count = expandTo(minutes);
+        Map<String, Integer> result = new LinkedHashMap<>(count * 2);
+        for (int i = 0; i < count; i++) result.put(snapshot.stationNames[order[i]], orderTime[i]);
+        return result;
+    }
+
+    /** minutes 分钟内可达的站点个数 */
+    public synchronized int countWithin(int minutes) {
+        return expandTo(minutes);
+    }
+
+    // 把搜索推进到 minutes，返回到达时间不超过 minutes 的站点个数
+    private int expandTo(int minutes) {
+        if (minutes > radius) {
+            IntPriorityQueue pq = ws.heap;
+            while (!pq.isEmpty() && pq.minKey() <= minutes) {
+                int cost = pq.minKey();
+                int curr = pq.pop();
+                ws.settle(curr);
+                int station = sg.stateStation[curr];
+                if (stationTime[station] < 0) record(station, cost);
+                for (int e = sg.offsets[curr], stop = sg.offsets[curr + 1]; e < stop; e++) {
+                    int weight = weights[e];
+                    if (weight == LineAwareRouter.EXCLUDED) continue;
+                    int next = sg.targets[e];
+                    int newCost = cost + weight;
+                    if (newCost < ws.dist(next)) {
+                        ws.label(next, newCost, curr, e);
+                        pq.push(next, newCost);
+                    }
+                }
+            }
+            radius = minutes;
+        }
+        // 到达时间单调不减：二分找出前缀长度
+        int lo = 0, hi = reachedCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (orderTime[mid] <= minutes) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private void record(int station, int time) {
+        if (reachedCount == order.length) {
+            order = Arrays.copyOf(order, order.length * 2);
+            orderTime = Arrays.copyOf(orderTime, order.length);
+        }
+        order[reachedCount] = station;
+        orderTime[reachedCount++] = time;
+        stationTime[station] = time;
+    }
+}
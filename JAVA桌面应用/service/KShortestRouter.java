@@ -0,0 +1,309 @@
+package service;
+
+import model.*;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * 前 K 条无环备选路线 (Yen 算法，在 (站点, 线路) 状态图上)。
+ * 先从终点做一次反向搜索，得到各状态到终点的精确剩余代价；
+ * 偏离 (spur) 搜索只会删边、封点，剩余代价只增不减，因此它是所有偏离搜索共用的一致估价，
+ * 每次偏离搜索都是近乎沿最短路树直走的 A*。同一轮的各个偏离点在 ForkJoin 公共池中并行搜索。
+ * 与已选路线乘车区间重合过多的候选视为"几乎相同"，不列入结果。
+ */
+public final class KShortestRouter {
+    // 候选与已选路线的乘车区间重合比例达到此值即视为几乎相同
+    public static final double MAX_OVERLAP = 0.8;
+    // 为凑够 K 条差异化路线，Yen 迭代最多产生的路径数 (相对 K 的倍数)
+    private static final int PATH_LIMIT_FACTOR = 10;
+
+    private static final int INF = SearchWorkspace.INF;
+    private static final ThreadLocal<Blocks> BLOCKS = ThreadLocal.withInitial(Blocks::new);
+
+    private KShortestRouter() {}
+
+    /**
+     * @param w 策略边权表 (可含 EXCLUDED)
+     * @return 按代价从小到大排列的至多 k 条路线，第一条即最优路线；不可达时为空列表
+     */
+    public static List<RouteResult> search(LineStateGraph sg, int[] w, int source, int target, int k,
+                                           String strategyName) {
+        List<RouteResult> results = new ArrayList<>();
+        if (k <= 0 || source == target) return results;
+
+        // 1. 反向最短路树：各状态到终点的精确剩余代价
+        int[] remaining = remainingCosts(sg, w, target);
+
+        // 2. 最优路线
+        Path best = spur(sg, w, remaining, source, target, null, -1, Collections.emptyList());
+        if (best == null) return results;
+
+        List<Path> accepted = new ArrayList<>();       // Yen 已确定的路径 (含被过滤掉的)
+        List<Path> shown = new ArrayList<>();          // 差异化之后的结果
+        PriorityQueue<Path> candidates = new PriorityQueue<>();
+        Set<Path> seen = new HashSet<>();
+        candidates.add(best);
+        seen.add(best);
+        int limit = k * PATH_LIMIT_FACTOR;
+
+        while (shown.size() < k && accepted.size() < limit && !candidates.isEmpty()) {
+            Path path = candidates.poll();
+            accepted.add(path);
+            if (isDiverse(sg, path, shown)) shown.add(path);
+            if (shown.size() == k) break;
+
+            // 3. 以该路径的每个状态 (及虚拟起点 -1) 为偏离点并行搜索
+            List<Path> snapshot = new ArrayList<>(accepted);
+            Path[] spurs = new Path[path.length() + 1];
+            IntStream.rangeClosed(-1, path.length() - 1).parallel().forEach(i ->
+                    spurs[i + 1] = spur(sg, w, remaining, source, target, path, i, snapshot));
+            for (Path p : spurs) {
+                if (p != null && seen.add(p)) candidates.add(p);
+            }
+        }
+
+        for (int i = 0; i < shown.size(); i++) {
+            Path p = shown.get(i);
+            String name = i == 0 ? strategyName : "备选方案" + i;
+            results.add(LineAwareRouter.toRoute(sg, p.first, p.edges, p.edges.length, name));
+        }
+        return results;
+    }
+
+    // 从终点各状态出发沿入边的一对多搜索，不可达为 INF
+    private static int[] remainingCosts(LineStateGraph sg, int[] w, int target) {
+        SearchWorkspace ws = SearchWorkspace.backward();
+        ws.reset(sg.stateCount());
+        IntPriorityQueue pq = ws.heap;
+        for (int s = sg.stationStates[target]; s < sg.stationStates[target + 1]; s++) {
+            ws.label(s, 0, -1, -1);
+            pq.push(s, 0);
+        }
+        int[] remaining = new int[sg.stateCount()];
+        Arrays.fill(remaining, INF);
+        while (!pq.isEmpty()) {
+            int cost = pq.minKey();
+            int curr = pq.pop();
+            remaining[curr] = cost;
+            for (int i = sg.inOffsets[curr], stop = sg.inOffsets[curr + 1]; i < stop; i++) {
+                int weight = w[sg.inEdges[i]];
+                if (weight == LineAwareRouter.EXCLUDED) continue;
+                int prev = sg.inSources[i];
+                int newCost = cost + weight;
+                if (newCost < ws.dist(prev)) {
+                    ws.label(prev, newCost, curr, sg.inEdges[i]);
+                    pq.push(prev, newCost);
+                }
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * 偏离搜索：保留 path 的前 i 条边 (根路径，止于第 i 个状态)，从该状态另寻去往终点的最短路。
+     * 封闭根路径上 (偏离点之前) 经过的全部站点，并删除与本根路径相同的已选路径在此处的下一条边；
+     * i = -1 时没有根路径，改为禁止已选路径的起始状态。path 为 null 时即普通最短路。
+     */
+    private static Path spur(LineStateGraph sg, int[] w, int[] remaining, int source, int target,
+                             Path path, int i, List<Path> accepted) {
+        Blocks b = BLOCKS.get();
+        b.reset(sg.stateCount(), sg.edgeCount());
+        int spurState = -1;
+        if (path != null) {
+            int[] states = path.states(sg);
+            if (i >= 0) {
+                spurState = states[i];
+                for (int j = 0; j < i; j++) b.blockStation(sg, sg.stateStation[states[j]]);
+                b.unblockState(spurState);
+            }
+            for (Path p : accepted) {
+                if (!p.sharesRoot(path, i)) continue;
+                if (i < 0) b.blockState(p.first);
+                else if (i < p.edges.length) b.removeEdge(p.edges[i]);
+            }
+        }
+
+        SearchWorkspace ws = SearchWorkspace.local();
+        ws.reset(sg.stateCount());
+        IntPriorityQueue pq = ws.heap;
+        if (spurState >= 0) {
+            if (remaining[spurState] == INF) return null;
+            ws.label(spurState, 0, -1, -1);
+            pq.push(spurState, remaining[spurState]);
+        } else {
+            for (int s = sg.stationStates[source]; s < sg.stationStates[source + 1]; s++) {
+                if (b.blocked(s) || remaining[s] == INF) continue;
+                ws.label(s, 0, -1, -1);
+                pq.push(s, remaining[s]);
+            }
+        }
+
+        int end = -1;
+        while (!pq.isEmpty()) {
+            int curr = pq.pop();
+            ws.settle(curr);
+            if (sg.stateStation[curr] == target) { end = curr; break; }
+            int cost = ws.dist[curr];
+            boolean atSource = sg.stateStation[curr] == source;
+            for (int e = sg.offsets[curr], stop = sg.offsets[curr + 1]; e < stop; e++) {
+                int weight = w[e];
+                if (weight == LineAwareRouter.EXCLUDED || b.removed(e)) continue;
+                // 起点可直接从任一线路出发，在起点换乘没有意义
+                if (atSource && sg.isTransfer(e)) continue;
+                int next = sg.targets[e];
+                if (b.blocked(next) || remaining[next] == INF) continue;
+                int newCost = cost + weight;
+                if (newCost < ws.dist(next)) {
+                    ws.label(next, newCost, curr, e);
+                    pq.push(next, newCost + remaining[next]);
+                }
+            }
+        }
+        if (end < 0) return null;
+
+        // 拼接根路径与偏离路径
+        int spurLength = 0;
+        for (int s = end; ws.parent[s] >= 0; s = ws.parent[s]) spurLength++;
+        int rootLength = Math.max(i, 0);
+        int[] edges = new int[rootLength + spurLength];
+        if (rootLength > 0) System.arraycopy(path.edges, 0, edges, 0, rootLength);
+        int first = end;
+        for (int j = edges.length - 1; j >= rootLength; j--) {
+            edges[j] = ws.parentEdge[first];
+            first = ws.parent[first];
+        }
+        if (rootLength > 0) first = path.first;
+        int cost = (rootLength > 0 ? path.costAt(w, rootLength) : 0) + ws.dist[end];
+        Path result = new Path(first, edges, cost);
+        // 偏离段可能换线绕回已经过的站点，这类路线不作为备选
+        return result.loopless(sg) ? result : null;
+    }
+
+    // 候选与已展示路线的乘车区间 (站点对) 重合比例均低于 MAX_OVERLAP
+    private static boolean isDiverse(LineStateGraph sg, Path path, List<Path> shown) {
+        Set<Long> segments = path.segments(sg);
+        if (segments.isEmpty()) return shown.isEmpty();
+        for (Path other : shown) {
+            Set<Long> common = new HashSet<>(segments);
+            common.retainAll(other.segments(sg));
+            if (common.size() >= MAX_OVERLAP * segments.size()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 状态图上的一条路径：起始状态 + 依次经过的边
+     */
+    private static final class Path implements Comparable<Path> {
+        final int first;
+        final int[] edges;
+        final int cost;
+        final int hash;
+        private Set<Long> segments;
+
+        Path(int first, int[] edges, int cost) {
+            this.first = first;
+            this.edges = edges;
+            this.cost = cost;
+            this.hash = 31 * first + Arrays.hashCode(edges);
+        }
+
+        int length() { return edges.length; }
+
+        // 依次经过的状态 (共 length + 1 个)
+        int[] states(LineStateGraph sg) {
+            int[] states = new int[edges.length + 1];
+            states[0] = first;
+            for (int j = 0; j < edges.length; j++) states[j + 1] = sg.targets[edges[j]];
+            return states;
+        }
+
+        // 前 n 条边的代价
+        int costAt(int[] w, int n) {
+            int c = 0;
+            for (int j = 0; j < n; j++) c += w[edges[j]];
+            return c;
+        }
+
+        // 与 other 的前 i 条边 (及起始状态) 是否相同；i = -1 时任意两条路径都共享空根
+        boolean sharesRoot(Path other, int i) {
+            if (i < 0) return true;
+            if (first != other.first || edges.length < i) return false;
+            for (int j = 0; j < i; j++) if (edges[j] != other.edges[j]) return false;
+            return true;
+        }
+
+        // 站点不重复 (同站换乘除外)
+        boolean loopless(LineStateGraph sg) {
+            int[] stations = new int[edges.length + 1];
+            int count = 0, last = -1;
+            for (int s : states(sg)) {
+                int station = sg.stateStation[s];
+                if (station != last) stations[count++] = station;
+                last = station;
+            }
+            Arrays.sort(stations, 0, count);
+            for (int j = 1; j < count; j++) if (stations[j] == stations[j - 1]) return false;
+            return true;
+        }
+
+        // 乘车区间集合：(上一站, 下一站) 站点对
+        Set<Long> segments(LineStateGraph sg) {
+            if (segments == null) {
+                segments = new HashSet<>();
+                int prev = sg.stateStation[first];
+                for (int e : edges) {
+                    int next = sg.stateStation[sg.targets[e]];
+                    if (next != prev) segments.add(((long) prev << 32) | next);
+                    prev = next;
+                }
+            }
+            return segments;
+        }
+
+        @Override
+        public int compareTo(Path o) {
+            if (cost != o.cost) return Integer.compare(cost, o.cost);
+            return Integer.compare(edges.length, o.edges.length);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Path)) return false;
+            Path p = (Path) o;
+            return first == p.first && Arrays.equals(edges, p.edges);
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+    }
+
+    /**
+     * 每个线程复用的封点/删边标记 (轮次戳，无需清空)
+     */
+    private static final class Blocks {
+        int[] stateStamp = new int[0];
+        int[] edgeStamp = new int[0];
+        int epoch = 0;
+
+        void reset(int states, int edges) {
+            if (stateStamp.length < states) stateStamp = new int[states];
+            if (edgeStamp.length < edges) edgeStamp = new int[edges];
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(stateStamp, 0);
+                Arrays.fill(edgeStamp, 0);
+                epoch = 1;
+            }
+        }
+
+        boolean blocked(int state) { return stateStamp[state] == epoch; }
+        void blockState(int state) { stateStamp[state] = epoch; }
+        void unblockState(int state) { stateStamp[state] = 0; }
+        void blockStation(LineStateGraph sg, int station) {
+            for (int s = sg.stationStates[station]; s < sg.stationStates[station + 1]; s++) stateStamp[s] = epoch;
+        }
+
+        boolean removed(int edge) { return edgeStamp[edge] == epoch; }
+        void removeEdge(int edge) { edgeStamp[edge] = epoch; }
+    }
+}
@@ -0,0 +1,237 @@
+package service;
+
+import model.*;
+import java.io.*;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * ALT (A*, Landmarks, Triangle inequality) 预处理：
+ * 选取 K 个路标，预先计算每个站点到/自各路标的最短乘车时间，
+ * 查询时由三角不等式 d(v,t) >= max(d(L,t)-d(L,v), d(v,L)-d(t,L)) 得到剩余代价下界。
+ * 路标表按站点交错存放 ([v*K + i])，一次估价只读取两段连续内存。
+ */
+public final class LandmarkIndex {
+    public static final int DEFAULT_LANDMARKS = 8;
+
+    private static final int MAGIC = 0x414C5431; // "ALT1"
+    private static final int INF = SearchWorkspace.INF;
+
+    public final long fingerprint;
+    public final int[] landmarks;
+    private final int k;
+    private final int[] fromLandmark; // d(L_i, v)
+    private final int[] toLandmark;   // d(v, L_i)
+
+    private LandmarkIndex(long fingerprint, int[] landmarks, int[] fromLandmark, int[] toLandmark) {
+        this.fingerprint = fingerprint;
+        this.landmarks = landmarks;
+        this.k = landmarks.length;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    /**
+     * 优先读取与当前快照匹配的路标文件，否则重新计算并写回 (file 为 null 时不读写文件)
+     */
+    public static LandmarkIndex loadOrBuild(CompiledGraph g, File file) {
+        if (file != null) {
+            LandmarkIndex loaded = load(file, g);
+            if (loaded != null) return loaded;
+        }
+        LandmarkIndex built = build(g, DEFAULT_LANDMARKS);
+        if (file != null) built.save(file);
+        return built;
+    }
+
+    /**
+     * 选取路标并并行计算正向/反向距离表
+     */
+    public static LandmarkIndex build(CompiledGraph g, int count) {
+        int n = g.stationCount();
+        int k = Math.min(count, n);
+        int[] reverse = reverseCsr(g);
+        int[] landmarks = selectLandmarks(g, k, reverse);
+
+        int[] from = new int[n * k];
+        int[] to = new int[n * k];
+        // 2K 次单源最短路彼此独立，分摊到所有核心
+        IntStream.range(0, 2 * k).parallel().forEach(task -> {
+            int i = task % k;
+            int[] dist = task < k ? distances(g, landmarks[i], false, reverse) : distances(g, landmarks[i], true, reverse);
+            int[] table = task < k ? from : to;
+            for (int v = 0; v < n; v++) table[v * k + i] = dist[v];
+        });
+        return new LandmarkIndex(g.fingerprint(), landmarks, from, to);
+    }
+
+    /**
+     * 乘车时间意义下 v 到 t 的下界 (不含换乘罚时)
+     */
+    public int bound(int v, int t) {
+        int best = 0;
+        int bv = v * k, bt = t * k;
+        for (int i = 0; i < k; i++) {
+            int lt = fromLandmark[bt + i], lv = fromLandmark[bv + i];
+            if (lt != INF && lv != INF && lt - lv > best) best = lt - lv;
+            int vl = toLandmark[bv + i], tl = toLandmark[bt + i];
+            if (vl != INF && tl != INF && vl - tl > best) best = vl - tl;
+        }
+        return best;
+    }
+
+    /**
+     * 给定策略下的估价函数：时间下界乘以 "策略代价/乘车时间" 的全网最小比值
+     */
+    public Heuristic heuristic(CompiledGraph g, int strategy) {
+        int[] w = LineAwareRouter.weights(g, strategy);
+        LineStateGraph sg = g.lineStates();
+        double ratio = Double.MAX_VALUE;
+        for (int e = 0; e < sg.edgeCount(); e++) {
+            if (sg.isTransfer(e) || w[e] == LineAwareRouter.EXCLUDED || sg.times[e] == 0) continue;
+            ratio = Math.min(ratio, (double) w[e] / sg.times[e]);
+        }
+        if (ratio == Double.MAX_VALUE || ratio <= 0) return (v, t) -> 0;
+        if (ratio == 1.0) return this::bound;
+        double alpha = ratio;
+        return (v, t) -> Math.max((int) (bound(v, t) * alpha - 1e-6), 0);
+    }
+
+    // ========== 持久化 ==========
+
+    public void save(File file) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(fingerprint);
+            out.writeInt(fromLandmark.length / Math.max(k, 1));
+            out.writeInt(k);
+            for (int l : landmarks) out.writeInt(l);
+            for (int d : fromLandmark) out.writeInt(d);
+            for (int d : toLandmark) out.writeInt(d);
+        } catch (IOException e) {
+            System.err.println("路标文件保存失败: " + e.getMessage());
+        }
+    }
+
+    /** 读取路标文件；文件不存在、损坏或与快照不匹配时返回 null */
+    public static LandmarkIndex load(File file, CompiledGraph g) {
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readLong() != g.fingerprint()) return null;
+            int n = in.readInt(), k = in.readInt();
+            if (n != g.stationCount() || k < 0 || k > n) return null;
+            int[] landmarks = readInts(in, k);
+            int[] from = readInts(in, n * k);
+            int[] to = readInts(in, n * k);
+            return new LandmarkIndex(g.fingerprint(), landmarks, from, to);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static int[] readInts(DataInputStream in, int count) throws IOException {
+        int[] a = new int[count];
+        for (int i = 0; i < count; i++) a[i] = in.readInt();
+        return a;
+    }
+
+    // ========== 路标选择 ==========
+
+    /**
+     * 最远点法：坐标齐全时按直线距离选取 (无需最短路)，否则按乘车时间选取
+     */
+    private static int[] selectLandmarks(CompiledGraph g, int k, int[] reverse) {
+        int n = g.stationCount();
+        int[] chosen = new int[k];
+        if (k == 0) return chosen;
+        boolean allCoords = true;
+        for (int v = 0; v < n && allCoords; v++) allCoords = g.hasCoord(v);
+
+        // 第一个路标：离站点 0 最远的站点；之后每次取离已选路标最远的站点
+        chosen[0] = farthestFrom(g, 0, allCoords, reverse);
+        double[] minDist = new double[n];
+        Arrays.fill(minDist, Double.MAX_VALUE);
+        for (int i = 0; i + 1 < k; i++) {
+            int l = chosen[i];
+            if (allCoords) {
+                for (int v = 0; v < n; v++) {
+                    minDist[v] = Math.min(minDist[v], Math.hypot(g.coordX[v] - g.coordX[l], g.coordY[v] - g.coordY[l]));
+                }
+            } else {
+                int[] dist = distances(g, l, false, reverse);
+                // 不可达的站点视为无穷远，优先覆盖其它连通分量
+                for (int v = 0; v < n; v++) minDist[v] = Math.min(minDist[v], dist[v] == INF ? 1e18 : dist[v]);
+            }
+            int far = 0;
+            for (int v = 1; v < n; v++) if (minDist[v] > minDist[far]) far = v;
+            chosen[i + 1] = far;
+        }
+        return chosen;
+    }
+
+    private static int farthestFrom(CompiledGraph g, int src, boolean geometric, int[] reverse) {
+        int n = g.stationCount();
+        int far = src;
+        if (geometric) {
+            double best = -1;
+            for (int v = 0; v < n; v++) {
+                double d = Math.hypot(g.coordX[v] - g.coordX[src], g.coordY[v] - g.coordY[src]);
+                if (d > best) { best = d; far = v; }
+            }
+        } else {
+            int[] dist = distances(g, src, false, reverse);
+            long best = -1;
+            for (int v = 0; v < n; v++) {
+                long d = dist[v] == INF ? Long.MAX_VALUE : dist[v];
+                if (d > best) { best = d; far = v; }
+            }
+        }
+        return far;
+    }
+
+    // ========== 站点图最短路 (乘车时间，不含换乘罚时) ==========
+
+    /**
+     * 站点图的反向 CSR，布局为 [offsets(n+1) | sources(m) | costs(m)]
+     */
+    private static int[] reverseCsr(CompiledGraph g) {
+        int n = g.stationCount(), m = g.edgeCount();
+        int[] r = new int[n + 1 + 2 * m];
+        for (int e = 0; e < m; e++) r[g.targets[e] + 1]++;
+        for (int v = 0; v < n; v++) r[v + 1] += r[v];
+        int[] fill = Arrays.copyOf(r, n);
+        for (int u = 0; u < n; u++) {
+            for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++) {
+                int slot = fill[g.targets[e]]++;
+                r[n + 1 + slot] = u;
+                r[n + 1 + m + slot] = g.costs[e];
+            }
+        }
+        return r;
+    }
+
+    private static int[] distances(CompiledGraph g, int src, boolean backward, int[] reverse) {
+        int n = g.stationCount(), m = g.edgeCount();
+        SearchWorkspace ws = SearchWorkspace.local();
+        ws.reset(n);
+        ws.label(src, 0, -1, -1);
+        ws.heap.push(src, 0);
+        while (!ws.heap.isEmpty()) {
+            int cost = ws.heap.minKey();
+            int u = ws.heap.pop();
+            int begin = backward ? reverse[u] : g.offsets[u];
+            int end = backward ? reverse[u + 1] : g.offsets[u + 1];
+            for (int e = begin; e < end; e++) {
+                int v = backward ? reverse[n + 1 + e] : g.targets[e];
+                int newCost = cost + (backward ? reverse[n + 1 + m + e] : g.costs[e]);
+                if (newCost < ws.dist(v)) {
+                    ws.label(v, newCost, u, e);
+                    ws.heap.push(v, newCost);
+                }
+            }
+        }
+        int[] dist = new int[n];
+        for (int v = 0; v < n; v++) dist[v] = ws.dist(v);
+        return dist;
+    }
+}
@@ -0,0 +1,145 @@
+package service;
+
+import model.*;
+import java.util.*;
+
+/**
+ * 基于 (站点, 线路) 状态图的精确最短路引擎。
+ * 每条线路在每个站点都有独立标号，换乘罚时由站内换乘边表达，
+ * 不会再因为"按站点保留单一标号"而剪掉之后更优的到达方式。
+ */
+public final class LineAwareRouter {
+    // 被策略排除的边
+    public static final int EXCLUDED = -1;
+
+    private LineAwareRouter() {}
+
+    /**
+     * 策略对应的边权表 (按快照缓存)：乘车边、换乘边的代价，被排除的边为 EXCLUDED
+     */
+    public static int[] weights(CompiledGraph g, int strategy) {
+        return weights(g, RouteStrategy.of(strategy));
+    }
+
+    /** 可配置策略编译出的边权表，内容相同的策略共用同一份缓存 */
+    public static int[] weights(CompiledGraph g, RouteStrategy strategy) {
+        return g.derived(strategy, strategy::compile);
+    }
+
+    /**
+     * 从 source 站点所有状态出发，搜索到达 target 站点任一状态的最短路
+     * @return 终点状态编号，不可达返回 -1；路径保存在 ws 的前驱数组中
+     */
+    public static int search(LineStateGraph sg, int[] w, int source, int target, SearchWorkspace ws) {
+        ws.reset(sg.stateCount());
+        IntPriorityQueue pq = ws.heap;
+        for (int s = sg.stationStates[source]; s < sg.stationStates[source + 1]; s++) {
+            ws.label(s, 0, -1, -1);
+            pq.push(s, 0);
+        }
+
+        while (!pq.isEmpty()) {
+            int cost = pq.minKey();
+            int curr = pq.pop();
+            ws.settle(curr);
+            if (sg.stateStation[curr] == target) return curr;
+
+            for (int e = sg.offsets[curr], stop = sg.offsets[curr + 1]; e < stop; e++) {
+                int weight = w[e];
+                if (weight == EXCLUDED) continue;
+                int next = sg.targets[e];
+                int newCost = cost + weight;
+                if (newCost < ws.dist(next)) {
+                    ws.label(next, newCost, curr, e);
+                    pq.push(next, newCost);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 从 source 站点出发的一对多最短路树 (不提前终止)，结果保存在 ws 中
+     */
+    public static void searchAll(LineStateGraph sg, int[] w, int source, SearchWorkspace ws) {
+        ws.reset(sg.stateCount());
+        IntPriorityQueue pq = ws.heap;
+        for (int s = sg.stationStates[source]; s < sg.stationStates[source + 1]; s++) {
+            ws.label(s, 0, -1, -1);
+            pq.push(s, 0);
+        }
+        while (!pq.isEmpty()) {
+            int cost = pq.minKey();
+            int curr = pq.pop();
+            ws.settle(curr);
+            for (int e = sg.offsets[curr], stop = sg.offsets[curr + 1]; e < stop; e++) {
+                int weight = w[e];
+                if (weight == EXCLUDED) continue;
+                int next = sg.targets[e];
+                int newCost = cost + weight;
+                if (newCost < ws.dist(next)) {
+                    ws.label(next, newCost, curr, e);
+                    pq.push(next, newCost);
+                }
+            }
+        }
+    }
+
+    /**
+     * 一对多搜索后，target 站点代价最小的状态，不可达返回 -1
+     */
+    public static int bestState(LineStateGraph sg, SearchWorkspace ws, int target) {
+        int best = -1;
+        for (int s = sg.stationStates[target]; s < sg.stationStates[target + 1]; s++) {
+            if (ws.reached(s) && (best < 0 || ws.dist[s] < ws.dist[best])) best = s;
+        }
+        return best;
+    }
+
+    /**
+     * 沿前驱数组回溯，生成导航结果
+     */
+    public static RouteResult buildResult(LineStateGraph sg, SearchWorkspace ws, int endState, String strategyName) {
+        int count = 0;
+        for (int s = endState; ws.parent[s] >= 0; s = ws.parent[s]) count++;
+        int[] edges = ws.pathBuffer(count);
+        int first = endState;
+        for (int i = count - 1; i >= 0; i--) {
+            edges[i] = ws.parentEdge[first];
+            first = ws.parent[first];
+        }
+        return toRoute(sg, first, edges, count, strategyName);
+    }
+
+    /**
+     * 将状态图上的路径 (起始状态 + 依次经过的边) 转换为导航结果
+     */
+    public static RouteResult toRoute(LineStateGraph sg, int firstState, int[] edges, int count, String strategyName) {
+        CompiledGraph g = sg.base;
+        List<String> path = new ArrayList<>();
+        List<String> lineSegments = new ArrayList<>();
+        List<String> transferPoints = new ArrayList<>();
+        int totalTime = 0;
+        int transfers = 0;
+
+        path.add(g.stationNames[sg.stateStation[firstState]]);
+        int lastLine = -1;
+        for (int i = 0; i < count; i++) {
+            int e = edges[i];
+            if (sg.isTransfer(e)) continue;
+            int to = sg.targets[e];
+            int line = sg.stateLine[to];
+            if (lastLine >= 0 && line != lastLine) {
+                // 换乘发生在当前路径末尾的站点
+                transfers++;
+                totalTime += NavigationService.TRANSFER_PENALTY;
+                transferPoints.add(path.get(path.size() - 1));
+            }
+            totalTime += sg.times[e];
+            path.add(g.stationNames[sg.stateStation[to]]);
+            lineSegments.add(g.lineNames[line]);
+            lastLine = line;
+        }
+        return new RouteResult(path, lineSegments, totalTime, transfers, strategyName, transferPoints);
+    }
+}
@@ -0,0 +1,512 @@
+package service;
+
+import model.*;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * 多层覆盖图 (Multilevel Overlay)：适用于合并多座城市后规模很大的网络。
+ * 预处理分两步：
+ * 1. 划分 (只依赖结构)：按站点坐标递归惯性二分 —— 每次沿坐标分布的主轴方向从中位数切开，
+ *    子块不超过第 1 层单元大小为止；第 l 层单元是大小不超过 cellSize * fanout^(l-1) 的最大子块，各层逐级嵌套。
+ *    一端在单元内、另一端在单元外的边称为割边，其端点为该层的边界节点。
+ * 2. 定制 (依赖权重)：对每个单元计算其边界节点两两之间、只在单元内部行走的最短耗时 (边界团)；
+ *    第 1 层在原图上搜索，更高层在下一层的团与割边上搜索。
+ * 查询时离起终点越远的节点使用越高层的团，访问的节点数取决于单元大小而不是网络规模。
+ * 只修改耗时 (结构版本不变) 时，只重新定制包含变化边的单元及其上层单元。
+ */
+public final class MultilevelOverlay {
+    // 第 1 层单元的站点数上限，及相邻两层单元大小之比
+    public static final int DEFAULT_CELL_SIZE = 32;
+    public static final int DEFAULT_FANOUT = 8;
+
+    private static final ThreadLocal<SearchWorkspace> WORKSPACE = ThreadLocal.withInitial(SearchWorkspace::new);
+
+    private final Partition partition;
+    private final LineStateGraph sg;
+    private final int[] w;
+    // 全部单元的边界团 (行优先的 b x b 矩阵依次排列)，不可达或可省略的项为 INF
+    private final int[] clique;
+    // 本次构建 / 重新定制时计算的单元数
+    public final int customizedCells;
+
+    private MultilevelOverlay(Partition partition, LineStateGraph sg, int[] w, int[] clique, int customizedCells) {
+        this.partition = partition;
+        this.sg = sg;
+        this.w = w;
+        this.clique = clique;
+        this.customizedCells = customizedCells;
+    }
+
+    public long structureVersion() { return partition.structureVersion; }
+    public int levels() { return partition.levels; }
+    public int cellCount(int level) { return partition.cellCount[level]; }
+
+    // ========== 构建与重新定制 ==========
+
+    public static MultilevelOverlay build(CompiledGraph g, int[] w) {
+        return build(g, w, DEFAULT_CELL_SIZE, DEFAULT_FANOUT);
+    }
+
+    public static MultilevelOverlay build(CompiledGraph g, int[] w, int cellSize, int fanout) {
+        LineStateGraph sg = g.lineStates();
+        Partition p = new Partition(g, sg, Math.max(2, cellSize), Math.max(2, fanout));
+        int[] clique = new int[p.cliqueSize];
+        MultilevelOverlay overlay = new MultilevelOverlay(p, sg, w, clique, p.totalCells());
+        BitSet[] all = new BitSet[p.levels + 1];
+        for (int l = 1; l <= p.levels; l++) {
+            all[l] = new BitSet();
+            all[l].set(0, p.cellCount[l]);
+        }
+        overlay.customize(all);
+        return overlay;
+    }
+
+    /**
+     * 基于新快照的权重得到覆盖图：结构版本与状态图编号相同时沿用划分，只重新定制权重有变化的单元；
+     * 否则重新构建
+     */
+    public MultilevelOverlay recustomize(CompiledGraph g, int[] newWeights) {
+        LineStateGraph nsg = g.lineStates();
+        Partition p = partition;
+        // 划分按站点、状态与边的编号保存：编号或边顺序有任何变化都重新构建
+        if (g.structureVersion != p.structureVersion || !Arrays.equals(nsg.stateStation, sg.stateStation)
+                || !Arrays.equals(nsg.offsets, sg.offsets) || !Arrays.equals(nsg.targets, sg.targets)) {
+            return build(g, newWeights, p.cellSize, p.fanout);
+        }
+        BitSet[] dirty = new BitSet[p.levels + 1];
+        for (int l = 1; l <= p.levels; l++) dirty[l] = new BitSet();
+        for (int e = 0; e < newWeights.length; e++) {
+            if (newWeights[e] == w[e]) continue;
+            int u = nsg.stateStation[p.edgeSource[e]], v = nsg.stateStation[nsg.targets[e]];
+            for (int l = 1; l <= p.levels; l++) {
+                if (p.cellOf[l][u] == p.cellOf[l][v]) dirty[l].set(p.cellOf[l][u]);
+            }
+        }
+        // 下层单元的团变化后，包含它的上层单元也要重算
+        int count = 0;
+        for (int l = 1; l <= p.levels; l++) {
+            if (l < p.levels) {
+                for (int c = dirty[l].nextSetBit(0); c >= 0; c = dirty[l].nextSetBit(c + 1)) dirty[l + 1].set(p.parentCell[l][c]);
+            }
+            count += dirty[l].cardinality();
+        }
+        MultilevelOverlay overlay = new MultilevelOverlay(p, nsg, newWeights, clique.clone(), count);
+        overlay.customize(dirty);
+        return overlay;
+    }
+
+    // 自底向上逐层计算指定单元的团：同层单元互不影响，并行计算
+    private void customize(BitSet[] cells) {
+        Partition p = partition;
+        for (int l = 1; l <= p.levels; l++) {
+            int level = l;
+            cells[l].stream().parallel().forEach(c -> customizeCell(level, c));
+        }
+    }
+
+    private void customizeCell(int level, int cell) {
+        Partition p = partition;
+        SearchWorkspace ws = WORKSPACE.get();
+        int base = p.boundaryOffsets[level][cell];
+        int b = p.boundaryOffsets[level][cell + 1] - base;
+        int row = p.cliqueStart[level][cell];
+        int[] index = p.boundaryIndex[level];
+        for (int i = 0; i < b; i++) {
+            int from = p.boundaryNodes[level][base + i];
+            cellSearch(level, cell, from, -1, ws);
+            for (int j = 0; j < b; j++) {
+                int node = p.boundaryNodes[level][base + j];
+                clique[row + i * b + j] = ws.reached(node) && !viaBoundary(ws, index, from, node)
+                        ? ws.dist[node] : SearchWorkspace.INF;
+            }
+        }
+    }
+
+    // 最短路途经单元的其他边界节点时该项可省略：查询与上层定制会从那个边界节点继续松弛，结果不变
+    private static boolean viaBoundary(SearchWorkspace ws, int[] boundaryIndex, int from, int node) {
+        for (int s = ws.parent[node]; s != from && s >= 0; s = ws.parent[s]) {
+            if (boundaryIndex[s] >= 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 只在 level 层单元 cell 内部行走的单源最短路 (到达 stopAt 即停止，-1 表示搜完)：
+     * 第 1 层走原始边；更高层走下一层子单元的团，以及子单元之间、仍在 cell 内的割边
+     */
+    private void cellSearch(int level, int cell, int source, int stopAt, SearchWorkspace ws) {
+        Partition p = partition;
+        int[] cellOf = p.cellOf[level];
+        ws.reset(sg.stateCount());
+        IntPriorityQueue pq = ws.heap;
+        ws.label(source, 0, -1, -1);
+        pq.push(source, 0);
+        while (!pq.isEmpty()) {
+            int d = pq.minKey();
+            int u = pq.pop();
+            ws.settle(u);
+            if (u == stopAt) return;
+            if (level == 1) {
+                for (int e = sg.offsets[u], stop = sg.offsets[u + 1]; e < stop; e++) {
+                    int v = sg.targets[e];
+                    if (w[e] == LineAwareRouter.EXCLUDED || cellOf[sg.stateStation[v]] != cell) continue;
+                    relax(ws, u, v, d + w[e], e);
+                }
+            } else {
+                int sub = p.cellOf[level - 1][sg.stateStation[u]];
+                relaxClique(ws, level - 1, sub, u, d);
+                int[] subOf = p.cellOf[level - 1];
+                for (int e = sg.offsets[u], stop = sg.offsets[u + 1]; e < stop; e++) {
+                    int v = sg.targets[e], sv = sg.stateStation[v];
+                    if (w[e] == LineAwareRouter.EXCLUDED || subOf[sv] == sub || cellOf[sv] != cell) continue;
+                    relax(ws, u, v, d + w[e], e);
+                }
+            }
+        }
+    }
+
+    // 沿 level 层单元 cell 的团从边界节点 u 出发松弛
+    private void relaxClique(SearchWorkspace ws, int level, int cell, int u, int d) {
+        Partition p = partition;
+        int base = p.boundaryOffsets[level][cell];
+        int b = p.boundaryOffsets[level][cell + 1] - base;
+        int i = p.boundaryIndex[level][u];
+        int row = p.cliqueStart[level][cell] + i * b;
+        for (int j = 0; j < b; j++) {
+            int dist = clique[row + j];
+            if (j == i || dist == SearchWorkspace.INF) continue;
+            relax(ws, u, p.boundaryNodes[level][base + j], d + dist, cliqueEdge(row + j));
+        }
+    }
+
+    private static void relax(SearchWorkspace ws, int u, int v, int newCost, int edge) {
+        if (ws.settled(v) || newCost >= ws.dist(v)) return;
+        ws.label(v, newCost, u, edge);
+        ws.heap.push(v, newCost);
+    }
+
+    // 前驱边编码：原始边为非负编号，团中的一项编码为 -2 - 其在 clique 数组中的下标 (-1 表示起点)
+    private static int cliqueEdge(int index) { return -2 - index; }
+
+    // ========== 查询 ==========
+
+    /**
+     * 站点 source 到 target 的最短路 (代价为本覆盖图的权重)
+     * @return 终点状态编号，不可达返回 -1；路径 (原始边与团边混合) 保存在 ws 的前驱数组中
+     */
+    public int search(int source, int target, SearchWorkspace ws) {
+        Partition p = partition;
+        ws.reset(sg.stateCount());
+        IntPriorityQueue pq = ws.heap;
+        for (int s = sg.stationStates[source]; s < sg.stationStates[source + 1]; s++) {
+            ws.label(s, 0, -1, -1);
+            pq.push(s, 0);
+        }
+        while (!pq.isEmpty()) {
+            int d = pq.minKey();
+            int u = pq.pop();
+            ws.settle(u);
+            int station = sg.stateStation[u];
+            if (station == target) return u;
+
+            int level = queryLevel(station, source, target);
+            if (level == 0) {
+                for (int e = sg.offsets[u], stop = sg.offsets[u + 1]; e < stop; e++) {
+                    if (w[e] == LineAwareRouter.EXCLUDED) continue;
+                    relax(ws, u, sg.targets[e], d + w[e], e);
+                }
+            } else {
+                // u 必为该层边界节点：走团，或经割边离开所在单元
+                int[] cellOf = p.cellOf[level];
+                int cell = cellOf[station];
+                relaxClique(ws, level, cell, u, d);
+                for (int e = sg.offsets[u], stop = sg.offsets[u + 1]; e < stop; e++) {
+                    int v = sg.targets[e];
+                    if (w[e] == LineAwareRouter.EXCLUDED || cellOf[sg.stateStation[v]] == cell) continue;
+                    relax(ws, u, v, d + w[e], e);
+                }
+            }
+        }
+        return -1;
+    }
+
+    // 节点使用的层：与起点、终点都不在同一单元的最高层，0 表示在起点或终点的第 1 层单元内
+    private int queryLevel(int station, int source, int target) {
+        Partition p = partition;
+        for (int l = p.levels; l >= 1; l--) {
+            int[] cellOf = p.cellOf[l];
+            int c = cellOf[station];
+            if (c != cellOf[source] && c != cellOf[target]) return l;
+        }
+        return 0;
+    }
+
+    /**
+     * 查询并展开为原始状态图路径：团边在对应单元内重新搜索，逐层展开到原始边
+     */
+    public RouteResult route(int source, int target, SearchWorkspace ws, String strategyName) {
+        int end = search(source, target, ws);
+        if (end < 0) return null;
+        int count = 0;
+        for (int s = end; ws.parent[s] >= 0; s = ws.parent[s]) count++;
+        int[] codes = new int[count];
+        int first = end;
+        for (int i = count - 1; i >= 0; i--) {
+            codes[i] = ws.parentEdge[first];
+            first = ws.parent[first];
+        }
+        int[] edges = new int[Math.max(16, count)];
+        int size = 0;
+        for (int code : codes) {
+            int[] expanded = unpack(code);
+            if (size + expanded.length > edges.length) edges = Arrays.copyOf(edges, Math.max(edges.length * 2, size + expanded.length));
+            System.arraycopy(expanded, 0, edges, size, expanded.length);
+            size += expanded.length;
+        }
+        return LineAwareRouter.toRoute(sg, first, edges, size, strategyName);
+    }
+
+    // 将一条边展开为原始边序列
+    private int[] unpack(int code) {
+        if (code >= 0) return new int[]{code};
+        Partition p = partition;
+        int index = -2 - code;
+        // 所属的 (层, 单元)
+        int k = Arrays.binarySearch(p.cliqueOwnerStart, index);
+        if (k < 0) k = -k - 2;
+        int level = p.cliqueOwnerLevel[k], cell = p.cliqueOwnerCell[k];
+        int base = p.boundaryOffsets[level][cell];
+        int b = p.boundaryOffsets[level][cell + 1] - base;
+        int offset = index - p.cliqueStart[level][cell];
+        int from = p.boundaryNodes[level][base + offset / b];
+        int to = p.boundaryNodes[level][base + offset % b];
+
+        // 先把单元内的路径复制出来，工作区随后可被递归展开复用
+        SearchWorkspace ws = WORKSPACE.get();
+        cellSearch(level, cell, from, to, ws);
+        int count = 0;
+        for (int s = to; s != from; s = ws.parent[s]) count++;
+        int[] codes = new int[count];
+        int s = to;
+        for (int i = count - 1; i >= 0; i--) {
+            codes[i] = ws.parentEdge[s];
+            s = ws.parent[s];
+        }
+        int[] result = new int[0];
+        for (int c : codes) {
+            int[] sub = unpack(c);
+            int old = result.length;
+            result = Arrays.copyOf(result, old + sub.length);
+            System.arraycopy(sub, 0, result, old, sub.length);
+        }
+        return result;
+    }
+
+    // ========== 统计 ==========
+
+    /** 各层单元数、边界节点数与团的规模 */
+    public String report() {
+        Partition p = partition;
+        StringBuilder sb = new StringBuilder("多层覆盖图: ");
+        if (p.levels == 0) return sb.append("网络不超过一个单元，直接搜索").toString();
+        for (int l = 1; l <= p.levels; l++) {
+            if (l > 1) sb.append("; ");
+            sb.append("第").append(l).append("层 ").append(p.cellCount[l]).append(" 个单元, 边界节点 ")
+                    .append(p.boundaryNodes[l].length);
+        }
+        return sb.append(String.format("; 团共 %d 项, 约 %.1f KB", clique.length, clique.length * 4 / 1024.0)).toString();
+    }
+
+    // ========== 划分 (与权重无关，重新定制时共用) ==========
+
+    private static final class Partition {
+        final long structureVersion;
+        final int cellSize, fanout;
+        final int levels;
+        // 下标为层号 (1..levels)，第 0 项不用
+        final int[] cellCount;
+        // 站点 -> 所在单元
+        final int[][] cellOf;
+        // 单元 -> 上一层单元
+        final int[][] parentCell;
+        // 单元 c 的边界节点 (状态编号) 为 boundaryNodes[l][boundaryOffsets[l][c] .. boundaryOffsets[l][c+1])
+        final int[][] boundaryOffsets, boundaryNodes;
+        // 状态 -> 在所在单元边界节点中的序号，非边界节点为 -1
+        final int[][] boundaryIndex;
+        // 单元的团在 clique 数组中的起点
+        final int[][] cliqueStart;
+        final int cliqueSize;
+        // 按起点排序的 (层, 单元)，用于由团下标反查所属单元
+        final int[] cliqueOwnerStart, cliqueOwnerLevel, cliqueOwnerCell;
+        // 状态图边 -> 起点状态
+        final int[] edgeSource;
+
+        Partition(CompiledGraph g, LineStateGraph sg, int cellSize, int fanout) {
+            this.structureVersion = g.structureVersion;
+            this.cellSize = cellSize;
+            this.fanout = fanout;
+            int n = g.stationCount();
+
+            // 各层单元大小上限：只保留小于全网规模的层
+            List<Integer> limits = new ArrayList<>();
+            for (long u = cellSize; u < n; u *= fanout) limits.add((int) u);
+            levels = limits.size();
+            cellCount = new int[levels + 1];
+            cellOf = new int[levels + 1][];
+            for (int l = 1; l <= levels; l++) cellOf[l] = new int[n];
+
+            // 递归惯性二分：order 的每个子区间对应划分树的一个节点
+            double[][] xy = coordinates(g);
+            Integer[] order = new Integer[n];
+            for (int v = 0; v < n; v++) order[v] = v;
+            bisect(order, 0, n, Integer.MAX_VALUE, xy, limits);
+
+            parentCell = new int[levels + 1][];
+            for (int l = 1; l < levels; l++) {
+                parentCell[l] = new int[cellCount[l]];
+                for (int v = 0; v < n; v++) parentCell[l][cellOf[l][v]] = cellOf[l + 1][v];
+            }
+
+            edgeSource = new int[sg.edgeCount()];
+            for (int s = 0; s < sg.stateCount(); s++) {
+                for (int e = sg.offsets[s]; e < sg.offsets[s + 1]; e++) edgeSource[e] = s;
+            }
+
+            // 边界节点：割边的两端
+            boundaryOffsets = new int[levels + 1][];
+            boundaryNodes = new int[levels + 1][];
+            boundaryIndex = new int[levels + 1][];
+            cliqueStart = new int[levels + 1][];
+            int states = sg.stateCount();
+            int total = 0, owners = 0;
+            for (int l = 1; l <= levels; l++) {
+                int[] of = cellOf[l];
+                boolean[] boundary = new boolean[states];
+                for (int e = 0; e < sg.edgeCount(); e++) {
+                    int u = edgeSource[e], v = sg.targets[e];
+                    if (of[sg.stateStation[u]] != of[sg.stateStation[v]]) boundary[u] = boundary[v] = true;
+                }
+                int[] offsets = new int[cellCount[l] + 1];
+                for (int s = 0; s < states; s++) if (boundary[s]) offsets[of[sg.stateStation[s]] + 1]++;
+                for (int c = 0; c < cellCount[l]; c++) offsets[c + 1] += offsets[c];
+                int[] nodes = new int[offsets[cellCount[l]]];
+                int[] index = new int[states];
+                Arrays.fill(index, -1);
+                int[] fill = Arrays.copyOf(offsets, cellCount[l]);
+                for (int s = 0; s < states; s++) {
+                    if (!boundary[s]) continue;
+                    int c = of[sg.stateStation[s]];
+                    index[s] = fill[c] - offsets[c];
+                    nodes[fill[c]++] = s;
+                }
+                boundaryOffsets[l] = offsets;
+                boundaryNodes[l] = nodes;
+                boundaryIndex[l] = index;
+                cliqueStart[l] = new int[cellCount[l]];
+                for (int c = 0; c < cellCount[l]; c++) {
+                    int b = offsets[c + 1] - offsets[c];
+                    cliqueStart[l][c] = total;
+                    total += b * b;
+                }
+                owners += cellCount[l];
+            }
+            cliqueSize = total;
+            cliqueOwnerStart = new int[owners];
+            cliqueOwnerLevel = new int[owners];
+            cliqueOwnerCell = new int[owners];
+            int k = 0;
+            for (int l = 1; l <= levels; l++) {
+                for (int c = 0; c < cellCount[l]; c++, k++) {
+                    cliqueOwnerStart[k] = cliqueStart[l][c];
+                    cliqueOwnerLevel[k] = l;
+                    cliqueOwnerCell[k] = c;
+                }
+            }
+        }
+
+        int totalCells() {
+            int total = 0;
+            for (int l = 1; l <= levels; l++) total += cellCount[l];
+            return total;
+        }
+
+        /**
+         * 划分树的节点 [lo, hi)：大小首次不超过第 l 层上限时成为第 l 层单元；
+         * 仍大于第 1 层上限则沿主轴在中位数处切开
+         */
+        private void bisect(Integer[] order, int lo, int hi, int parentSize, double[][] xy, List<Integer> limits) {
+            int size = hi - lo;
+            for (int l = 1; l <= levels; l++) {
+                int limit = limits.get(l - 1);
+                if (size <= limit && parentSize > limit) {
+                    int id = cellCount[l]++;
+                    for (int i = lo; i < hi; i++) cellOf[l][order[i]] = id;
+                }
+            }
+            if (size <= cellSize) return;
+
+            // 主轴：坐标协方差矩阵最大特征值对应的方向
+            double mx = 0, my = 0;
+            for (int i = lo; i < hi; i++) {
+                mx += xy[0][order[i]];
+                my += xy[1][order[i]];
+            }
+            mx /= size;
+            my /= size;
+            double sxx = 0, syy = 0, sxy = 0;
+            for (int i = lo; i < hi; i++) {
+                double dx = xy[0][order[i]] - mx, dy = xy[1][order[i]] - my;
+                sxx += dx * dx;
+                syy += dy * dy;
+                sxy += dx * dy;
+            }
+            double angle = 0.5 * Math.atan2(2 * sxy, sxx - syy);
+            double ax = Math.cos(angle), ay = Math.sin(angle);
+            Arrays.sort(order, lo, hi, Comparator.comparingDouble((Integer v) -> xy[0][v] * ax + xy[1][v] * ay)
+                    .thenComparingInt(v -> v));
+            int mid = lo + size / 2;
+            bisect(order, lo, mid, size, xy, limits);
+            bisect(order, mid, hi, size, xy, limits);
+        }
+
+        /** 站点坐标；缺失的取已知邻站坐标的平均值 (逐轮向外扩散)，孤立且无坐标的站点取原点 */
+        private static double[][] coordinates(CompiledGraph g) {
+            int n = g.stationCount();
+            double[] x = new double[n], y = new double[n];
+            boolean[] known = new boolean[n];
+            for (int v = 0; v < n; v++) {
+                known[v] = g.hasCoord(v);
+                if (known[v]) {
+                    x[v] = g.coordX[v];
+                    y[v] = g.coordY[v];
+                }
+            }
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                boolean[] next = known.clone();
+                for (int v = 0; v < n; v++) {
+                    if (known[v]) continue;
+                    double sx = 0, sy = 0;
+                    int count = 0;
+                    for (int e = g.offsets[v]; e < g.offsets[v + 1]; e++) {
+                        int u = g.targets[e];
+                        if (!known[u]) continue;
+                        sx += x[u];
+                        sy += y[u];
+                        count++;
+                    }
+                    if (count > 0) {
+                        x[v] = sx / count;
+                        y[v] = sy / count;
+                        next[v] = true;
+                        changed = true;
+                    }
+                }
+                known = next;
+            }
+            return new double[][]{x, y};
+        }
+    }
+}
@@ -1,7 +1,14 @@
 package service;
 
 import model.*;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public class NavigationService {
     private TransportGraph graph;
@@ -12,124 +19,594 @@ public class NavigationService {
     public static final int STRATEGY_BUS_ONLY = 2; // 只坐公交
     public static final int STRATEGY_METRO_ONLY = 3;// 只坐地铁
 
+    // 换乘罚时 (分钟)
+    public static final int TRANSFER_PENALTY = 5;
+
+    // 路径引擎
+    public static final int ENGINE_STATION = 0;    // 按站点单标号的 Dijkstra (旧引擎)
+    public static final int ENGINE_LINE_AWARE = 1; // (站点, 线路) 状态图上的精确 Dijkstra
+    public static final int ENGINE_BIDIRECTIONAL = 2; // 状态图上的双向 Dijkstra
+    public static final int ENGINE_ASTAR = 3;      // 状态图上以地理下界为估价的 A*
+    public static final int ENGINE_ALT = 4;        // 状态图上以路标 (ALT) 下界为估价的 A*
+    public static final int ENGINE_CH = 5;         // 收缩层次 (Contraction Hierarchies)
+    public static final int ENGINE_OVERLAY = 6;    // 多层覆盖图 (适合合并多座城市后的大网络)
+
+    // 时刻表查询的默认发车间隔 (分钟)
+    public static final int DEFAULT_HEADWAY = 5;
+
+    private static final String[] ALT_KEYS = {"alt:0", "alt:1", "alt:2", "alt:3"};
+    private static final String[] CH_KEYS = {"ch:0", "ch:1", "ch:2", "ch:3"};
+    private static final String[] OVERLAY_KEYS = {"mlo:0", "mlo:1", "mlo:2", "mlo:3"};
+
+    private volatile int engine = ENGINE_LINE_AWARE;
+    // 线路数据文件；预处理结果 (路标表、收缩层次) 保存在其旁边，为 null 时只在内存中计算
+    private volatile String routesFile = null;
+    // 各线路在首末班之间的发车间隔 (分钟)
+    private volatile int headway = DEFAULT_HEADWAY;
+    // 各策略最近一次的多层覆盖图：只改耗时后沿用其划分，只重新定制变化的单元
+    private final Map<Integer, MultilevelOverlay> lastOverlays = new ConcurrentHashMap<>();
+    // 最近一次预处理重建及其对应的图版本：数据未变时再次保存直接沿用，不重复构建
+    private CompletableFuture<Void> lastRebuild = null;
+    private long lastRebuildVersion = -1;
+    private boolean lastRebuildHierarchy = false;
+
+    // 热门起终点的结果缓存 (按图版本失效)；结果可变，缓存只保存并返回副本
+    private volatile RouteCache<RouteResult> routeCache = new RouteCache<>(RouteCache.DEFAULT_CAPACITY, false, RouteResult::copy);
+    private volatile RouteCache<List<RouteResult>> paretoCache = new RouteCache<>(RouteCache.DEFAULT_CAPACITY, false, NavigationService::copyAll);
+
     public NavigationService(TransportGraph graph) {
         this.graph = graph;
     }
 
+    public int getEngine() { return engine; }
+    public void setEngine(int engine) {
+        this.engine = engine;
+        routeCache.clear(); // 不同引擎在等价路径间的取舍可能不同
+    }
+    public int getHeadway() { return headway; }
+    public void setHeadway(int headway) { this.headway = Math.max(1, headway); }
+
+    /**
+     * 重新设置结果缓存：容量 (条) 以及是否以软引用保存结果 (内存紧张时可被 GC 回收)
+     */
+    public void configureCache(int capacity, boolean softValues) {
+        routeCache = new RouteCache<>(capacity, softValues, RouteResult::copy);
+        paretoCache = new RouteCache<>(capacity, softValues, NavigationService::copyAll);
+    }
+
+    // Pareto 方案列表的副本 (只读列表，元素为各方案的副本)
+    private static List<RouteResult> copyAll(List<RouteResult> options) {
+        List<RouteResult> copy = new ArrayList<>(options.size());
+        for (RouteResult r : options) copy.add(r.copy());
+        return Collections.unmodifiableList(copy);
+    }
+
+    public RouteCache<RouteResult> getRouteCache() { return routeCache; }
+    public RouteCache<List<RouteResult>> getParetoCache() { return paretoCache; }
+
+    /**
+     * 指定线路数据文件，预处理结果将保存在其旁边 (如 routes.landmarks、routes.ch0)
+     */
+    public void setRoutesFile(String routesFile) {
+        this.routesFile = routesFile;
+    }
+
+    // routes.txt 旁边的预处理文件，未指定数据文件时返回 null
+    private File sidecar(String extension) {
+        String file = routesFile;
+        if (file == null) return null;
+        File routes = new File(file).getAbsoluteFile();
+        String name = routes.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(routes.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + "." + extension);
+    }
+
+    /**
+     * 基于当前数据在后台并行重建预处理结果并写回文件，管理员保存修改后调用。
+     * 路标表总是重建；收缩层次与中心点标签构建代价高，只在当前引擎为 CH 时重建，
+     * 否则留到第一次 CH 查询或耗时查询时按需构建 (过期的文件由指纹识别，不会被误用)。
+     * 自上次重建以来数据与引擎均未变时返回上次的任务 (失败的任务除外)
+     */
+    public synchronized CompletableFuture<Void> rebuildPreprocessing() {
+        CompiledGraph g = graph.compiled();
+        boolean withHierarchy = engine == ENGINE_CH;
+        if (lastRebuild != null && lastRebuildVersion == g.version && (lastRebuildHierarchy || !withHierarchy)
+                && !lastRebuild.isCompletedExceptionally()) return lastRebuild;
+        File landmarkFile = sidecar("landmarks");
+        CompletableFuture<Void> landmarks = CompletableFuture.runAsync(() -> {
+            LandmarkIndex index = LandmarkIndex.build(g, LandmarkIndex.DEFAULT_LANDMARKS);
+            if (landmarkFile != null) index.save(landmarkFile);
+            g.derived(LandmarkIndex.class, cg -> index);
+        });
+        CompletableFuture<Void> ch = withHierarchy ? CompletableFuture.runAsync(() -> {
+            ContractionHierarchy hierarchy = ContractionHierarchy.build(g.lineStates(), LineAwareRouter.weights(g, STRATEGY_TIME));
+            File chFile = sidecar("ch" + STRATEGY_TIME);
+            if (chFile != null) hierarchy.save(chFile);
+            g.derived(CH_KEYS[STRATEGY_TIME], cg -> hierarchy);
+            // 中心点标签按收缩层次的顺序构建
+            HubLabels labels = HubLabels.build(g.lineStates(), LineAwareRouter.weights(g, STRATEGY_TIME), hierarchy);
+            File hubFile = sidecar("hubs");
+            if (hubFile != null) labels.save(hubFile);
+            g.derived(HubLabels.class, cg -> labels);
+        }) : CompletableFuture.completedFuture(null);
+        lastRebuild = CompletableFuture.allOf(landmarks, ch);
+        lastRebuildVersion = g.version;
+        lastRebuildHierarchy = withHierarchy;
+        return lastRebuild;
+    }
+
+    private LandmarkIndex landmarks(CompiledGraph g) {
+        return g.derived(LandmarkIndex.class, cg -> LandmarkIndex.loadOrBuild(cg, sidecar("landmarks")));
+    }
+
+    private ContractionHierarchy contractionHierarchy(CompiledGraph g, int strategy) {
+        String key = strategy >= 0 && strategy < CH_KEYS.length ? CH_KEYS[strategy] : "ch:" + strategy;
+        return g.derived(key, cg -> ContractionHierarchy.loadOrBuild(cg.lineStates(),
+                LineAwareRouter.weights(cg, strategy), sidecar("ch" + strategy)));
+    }
+
+    private HubLabels hubLabels(CompiledGraph g) {
+        return g.derived(HubLabels.class, cg -> HubLabels.loadOrBuild(cg.lineStates(),
+                LineAwareRouter.weights(cg, STRATEGY_TIME), () -> contractionHierarchy(cg, STRATEGY_TIME), sidecar("hubs")));
+    }
+
+    /** 当前数据的中心点标签 (时间最短策略)，首次调用时构建或从文件读取 */
+    public HubLabels getHubLabels() {
+        return hubLabels(graph.compiled());
+    }
+
+    /**
+     * 两站之间的最短耗时 (分钟，含换乘罚时)，由中心点标签直接求得，不做搜索；
+     * 站点不存在或不可达时返回 -1。只需耗时而不需要路线时 (如网页端的高频查询) 使用
+     */
+    public int travelTime(String start, String end) {
+        CompiledGraph g = graph.compiled();
+        int source = start == null ? -1 : g.stationId(start);
+        int target = end == null ? -1 : g.stationId(end);
+        if (source < 0 || target < 0) return -1;
+        int time = hubLabels(g).travelTime(source, target);
+        return time == SearchWorkspace.INF ? -1 : time;
+    }
+
+    /**
+     * 使用当前引擎查询路径，结果按 (起点, 终点, 策略) 缓存
+     */
     public RouteResult search(String start, String end, int strategy) {
-        if (!graph.adjList.containsKey(start) || !graph.adjList.containsKey(end)) return null;
+        if (start == null || end == null) return null;
+        return routeCache.get(start, end, strategy, graph.getVersion(), () -> search(start, end, strategy, engine));
+    }
+
+    /**
+     * 使用指定引擎查询路径
+     */
+    public RouteResult search(String start, String end, int strategy, int engine) {
+        CompiledGraph g = graph.compiled();
+        int source = g.stationId(start);
+        int target = g.stationId(end);
+        if (source < 0 || target < 0) return null;
+
+        // 换乘最少由专用引擎回答 (单标号旧引擎除外，保留作对照)
+        if (strategy == STRATEGY_TRANSFER && engine != ENGINE_STATION) return searchFewestTransfers(g, source, target);
+
+        switch (engine) {
+            case ENGINE_STATION: return searchStationLabels(g, source, target, strategy);
+            case ENGINE_BIDIRECTIONAL: return searchBidirectional(g, source, target, strategy);
+            case ENGINE_ASTAR: return searchAStar(g, source, target, strategy, GeoHeuristic.of(g, strategy));
+            case ENGINE_ALT: return searchAStar(g, source, target, strategy, altHeuristic(g, strategy));
+            case ENGINE_CH: return searchCH(g, source, target, strategy);
+            case ENGINE_OVERLAY: return searchOverlay(g, source, target, strategy);
+            default: return searchLineAware(g, source, target, strategy);
+        }
+    }
+
+    /**
+     * 按可配置策略查询 (状态图 Dijkstra)。起终点不受"避开站点"约束；
+     * 设置了换乘次数上限而最优路线超限时，改为在 Pareto 方案中取不超限的代价最小者，
+     * 上限之内不可达时返回 null
+     */
+    public RouteResult search(String start, String end, RouteStrategy strategy) {
+        CompiledGraph g = graph.compiled();
+        int source = start == null ? -1 : g.stationId(start);
+        int target = end == null ? -1 : g.stationId(end);
+        if (source < 0 || target < 0) return null;
+        if (source == target) {
+            RouteResult single = singleStation(g, source, STRATEGY_TIME);
+            single.strategyName = strategy.name;
+            return single;
+        }
+
+        strategy = strategy.allowStations(Arrays.asList(start, end));
+        LineStateGraph sg = g.lineStates();
+        int[] w = LineAwareRouter.weights(g, strategy);
+        SearchWorkspace ws = SearchWorkspace.local();
+        int endState = LineAwareRouter.search(sg, w, source, target, ws);
+        if (endState < 0) return null;
+        RouteResult best = LineAwareRouter.buildResult(sg, ws, endState, strategy.name);
+        if (strategy.maxTransfers == RouteStrategy.UNLIMITED || best.transferCount <= strategy.maxTransfers) return best;
+
+        // Pareto 方案按换乘次数递增、代价递减排列 (换乘上限即策略的上限)：最后一个即所求
+        List<RouteResult> options = ParetoRouter.search(sg, w, source, target, ws, strategy.name, strategy.maxTransfers);
+        return options.isEmpty() ? null : options.get(options.size() - 1);
+    }
+
+    private RouteResult searchLineAware(CompiledGraph g, int source, int target, int strategy) {
+        if (source == target) return singleStation(g, source, strategy);
+        LineStateGraph sg = g.lineStates();
+        SearchWorkspace ws = SearchWorkspace.local();
+        int endState = LineAwareRouter.search(sg, LineAwareRouter.weights(g, strategy), source, target, ws);
+        return endState < 0 ? null : LineAwareRouter.buildResult(sg, ws, endState, strategyName(strategy));
+    }
+
+    private RouteResult searchFewestTransfers(CompiledGraph g, int source, int target) {
+        if (source == target) return singleStation(g, source, STRATEGY_TRANSFER);
+        LineStateGraph sg = g.lineStates();
+        SearchWorkspace ws = SearchWorkspace.local();
+        int endState = TransferRouter.of(g).search(sg, LineAwareRouter.weights(g, STRATEGY_TIME), source, target, ws);
+        return endState < 0 ? null : LineAwareRouter.buildResult(sg, ws, endState, strategyName(STRATEGY_TRANSFER));
+    }
+
+    private RouteResult searchBidirectional(CompiledGraph g, int source, int target, int strategy) {
+        if (source == target) return singleStation(g, source, strategy);
+        LineStateGraph sg = g.lineStates();
+        SearchWorkspace fwd = SearchWorkspace.local(), bwd = SearchWorkspace.backward();
+        int meet = BidirectionalRouter.search(sg, LineAwareRouter.weights(g, strategy), source, target, fwd, bwd);
+        return meet < 0 ? null : BidirectionalRouter.buildResult(sg, fwd, bwd, meet, strategyName(strategy));
+    }
+
+    private Heuristic altHeuristic(CompiledGraph g, int strategy) {
+        String key = strategy >= 0 && strategy < ALT_KEYS.length ? ALT_KEYS[strategy] : "alt:" + strategy;
+        return g.derived(key, cg -> landmarks(cg).heuristic(cg, strategy));
+    }
+
+    private RouteResult searchAStar(CompiledGraph g, int source, int target, int strategy, Heuristic h) {
+        if (source == target) return singleStation(g, source, strategy);
+        LineStateGraph sg = g.lineStates();
+        SearchWorkspace ws = SearchWorkspace.local();
+        int endState = AStarRouter.search(sg, LineAwareRouter.weights(g, strategy), h, source, target, ws);
+        return endState < 0 ? null : LineAwareRouter.buildResult(sg, ws, endState, strategyName(strategy));
+    }
+
+    private RouteResult searchCH(CompiledGraph g, int source, int target, int strategy) {
+        if (source == target) return singleStation(g, source, strategy);
+        LineStateGraph sg = g.lineStates();
+        ContractionHierarchy ch = contractionHierarchy(g, strategy);
+        SearchWorkspace fwd = SearchWorkspace.local(), bwd = SearchWorkspace.backward();
+        int meet = ch.search(sg, source, target, fwd, bwd);
+        return meet < 0 ? null : ch.buildResult(sg, fwd, bwd, meet, strategyName(strategy));
+    }
+
+    private MultilevelOverlay overlay(CompiledGraph g, int strategy) {
+        String key = strategy >= 0 && strategy < OVERLAY_KEYS.length ? OVERLAY_KEYS[strategy] : "mlo:" + strategy;
+        return g.derived(key, cg -> {
+            int[] w = LineAwareRouter.weights(cg, strategy);
+            MultilevelOverlay previous = lastOverlays.get(strategy);
+            MultilevelOverlay overlay = previous == null ? MultilevelOverlay.build(cg, w) : previous.recustomize(cg, w);
+            lastOverlays.put(strategy, overlay);
+            return overlay;
+        });
+    }
+
+    /** 当前数据在指定策略下的多层覆盖图，首次调用时构建 */
+    public MultilevelOverlay getOverlay(int strategy) {
+        return overlay(graph.compiled(), strategy);
+    }
+
+    private RouteResult searchOverlay(CompiledGraph g, int source, int target, int strategy) {
+        if (source == target) return singleStation(g, source, strategy);
+        return overlay(g, strategy).route(source, target, SearchWorkspace.local(), strategyName(strategy));
+    }
+
+    /**
+     * 一次搜索返回 (耗时, 换乘次数) 的全部 Pareto 最优方案，按换乘次数从少到多排列：
+     * 第一条即换乘最少 (同换乘次数中最快)，最后一条即时间最短。
+     * 只坐公交 / 只坐地铁时在相应线路范围内求 Pareto 集；不可达时返回空列表。
+     * 结果为只读列表，方案对象是缓存的副本，可自由修改
+     */
+    public List<RouteResult> searchPareto(String start, String end, int strategy) {
+        if (start == null || end == null) return Collections.emptyList();
+        return paretoCache.get(start, end, strategy, graph.getVersion(), () -> computePareto(start, end, strategy));
+    }
 
-        PriorityQueue<Node> pq = new PriorityQueue<>(Comparator.comparingInt(n -> n.cost));
-        Map<String, Integer> minCost = new HashMap<>();
+    private List<RouteResult> computePareto(String start, String end, int strategy) {
+        CompiledGraph g = graph.compiled();
+        int source = g.stationId(start);
+        int target = g.stationId(end);
+        if (source < 0 || target < 0) return new ArrayList<>();
+        if (source == target) return new ArrayList<>(Collections.singletonList(singleStation(g, source, strategy)));
 
-        pq.add(new Node(start, 0, null, null, null));
-        minCost.put(start, 0);
-        Node finalNode = null;
+        // 换乘最少同样以耗时为代价，换乘次数由标号的第二维表达
+        List<RouteResult> options = ParetoRouter.search(g.lineStates(), LineAwareRouter.weights(g, timeStrategy(strategy)),
+                source, target, SearchWorkspace.local(), strategyName(strategy));
+        if (!options.isEmpty() && (strategy == STRATEGY_TIME || strategy == STRATEGY_TRANSFER)) {
+            for (RouteResult r : options) r.strategyName = "折中方案";
+            options.get(0).strategyName = strategyName(STRATEGY_TRANSFER);
+            options.get(options.size() - 1).strategyName = strategyName(STRATEGY_TIME);
+        }
+        return options;
+    }
+
+    /**
+     * 前 k 条无环备选路线，按策略代价从小到大排列，第一条即最优路线；
+     * 与已列出路线几乎重合的路线被过滤掉，因此可能少于 k 条。不可达时返回空列表
+     */
+    public List<RouteResult> searchAlternatives(String start, String end, int strategy, int k) {
+        CompiledGraph g = graph.compiled();
+        int source = start == null ? -1 : g.stationId(start);
+        int target = end == null ? -1 : g.stationId(end);
+        if (source < 0 || target < 0 || k <= 0) return new ArrayList<>();
+        if (source == target) return new ArrayList<>(Collections.singletonList(singleStation(g, source, strategy)));
+        return KShortestRouter.search(g.lineStates(), LineAwareRouter.weights(g, strategy), source, target, k,
+                strategyName(strategy));
+    }
+
+    /**
+     * 按时刻表查询 (RAPTOR)：在 departureTime (当日分钟数) 出发，遵守各线路首末班时间，
+     * 返回 (到达时间, 换乘次数) 的全部 Pareto 最优行程，按换乘次数从少到多排列，
+     * 最后一条即最早到达；不可达时返回空列表
+     */
+    public List<RouteResult> searchDepartingAt(String start, String end, int strategy, int departureTime) {
+        CompiledGraph g = graph.compiled();
+        int source = g.stationId(start);
+        int target = g.stationId(end);
+        if (source < 0 || target < 0) return new ArrayList<>();
+        if (source == target) {
+            RouteResult stay = singleStation(g, source, strategy);
+            stay.departureTime = stay.arrivalTime = departureTime;
+            return new ArrayList<>(Collections.singletonList(stay));
+        }
+        return RaptorRouter.search(g.timetable(), source, target, departureTime, headway, strategy, strategyName(strategy));
+    }
+
+    /**
+     * 按时刻表查询最早到达的单条行程 (连接扫描算法)，不可达返回 null
+     */
+    public RouteResult searchEarliestArrival(String start, String end, int strategy, int departureTime) {
+        CompiledGraph g = graph.compiled();
+        int source = g.stationId(start);
+        int target = g.stationId(end);
+        if (source < 0 || target < 0) return null;
+        if (source == target) {
+            RouteResult stay = singleStation(g, source, strategy);
+            stay.departureTime = stay.arrivalTime = departureTime;
+            return stay;
+        }
+        return ConnectionScanRouter.search(g.connections(headway), source, target, departureTime, strategy, strategyName(strategy));
+    }
+
+    /**
+     * 批量查询：按起点分组并行计算，结果与输入一一对应 (站点不存在或不可达为 null)；
+     * 使用当前引擎，状态图 Dijkstra 引擎下同一起点共享一对多最短路树
+     */
+    public List<RouteResult> searchBatch(List<RouteQuery> queries) {
+        List<RouteResult> results = new ArrayList<>(queries.size());
+        new BatchRouter(this, graph).route(queries.iterator(), results::add);
+        return results;
+    }
+
+    /**
+     * 流式批量查询：逐块读取查询流，按输入顺序把结果交给 sink，适合数量很大的离线任务
+     */
+    public void searchBatch(Stream<RouteQuery> queries, Consumer<RouteResult> sink) {
+        new BatchRouter(this, graph).route(queries.iterator(), sink);
+    }
+
+    /**
+     * 一对多最短时间树：从 origin 到 targets 中各站的出行时间 (含换乘罚时)，不可达为 UNREACHABLE；
+     * targets 为 null 时按 {@link TransportGraph#getAllStations()} 的顺序返回全部站点
+     */
+    public int[] travelTimesFrom(String origin, List<String> targets, int strategy) {
+        CompiledGraph g = graph.compiled();
+        if (targets == null) targets = graph.getAllStations();
+        int[] ids = stationIds(g, targets);
+        int[] row = new int[ids.length];
+        fillRow(g, g.stationId(origin), ids, timeStrategy(strategy), row);
+        return row;
+    }
+
+    /**
+     * 等时圈：从 origin 出发 minutes 分钟内可达的站点 -> 到达时间，按到达先后排列；起点不存在时为空表
+     */
+    public Map<String, Integer> isochrone(String origin, int minutes, int strategy) {
+        IsochroneSearch search = isochroneSearch(origin, strategy);
+        return search == null ? new LinkedHashMap<>() : search.within(minutes);
+    }
+
+    /**
+     * 可增量扩展的等时圈搜索：对同一起点反复调整预算时复用已搜索的前沿。
+     * 图被修改后需重新获取 (见 {@link IsochroneSearch#isCurrent})；起点不存在返回 null
+     */
+    public IsochroneSearch isochroneSearch(String origin, int strategy) {
+        CompiledGraph g = graph.compiled();
+        int source = origin == null ? -1 : g.stationId(origin);
+        return source < 0 ? null : new IsochroneSearch(g, source, timeStrategy(strategy));
+    }
+
+    /**
+     * 站点集合 (null 表示全部站点) 两两之间的出行时间矩阵，各行并行计算，保存在堆内
+     */
+    public TravelTimeMatrix travelTimeMatrix(List<String> stations, int strategy) {
+        CompiledGraph g = graph.compiled();
+        if (stations == null) stations = graph.getAllStations();
+        TravelTimeMatrix matrix = TravelTimeMatrix.inMemory(stations, strategy, g.fingerprint());
+        fillMatrix(g, matrix, strategy);
+        return matrix;
+    }
+
+    /**
+     * 同上，但矩阵写入内存映射文件 file，可超过堆大小；之后可用 {@link TravelTimeMatrix#open(File)} 直接查询。
+     * 返回的矩阵使用完毕后需 close
+     */
+    public TravelTimeMatrix travelTimeMatrix(List<String> stations, int strategy, File file) throws IOException {
+        CompiledGraph g = graph.compiled();
+        if (stations == null) stations = graph.getAllStations();
+        TravelTimeMatrix matrix = TravelTimeMatrix.create(file, stations, strategy, g.fingerprint());
+        fillMatrix(g, matrix, strategy);
+        matrix.flush();
+        return matrix;
+    }
+
+    private void fillMatrix(CompiledGraph g, TravelTimeMatrix matrix, int strategy) {
+        int[] ids = stationIds(g, matrix.stations());
+        int costStrategy = timeStrategy(strategy);
+        IntStream.range(0, ids.length).parallel().forEach(i -> {
+            int[] row = new int[ids.length];
+            fillRow(g, ids[i], ids, costStrategy, row);
+            matrix.setRow(i, row);
+        });
+    }
+
+    // 一对多搜索后按目标站点取最小代价
+    private static void fillRow(CompiledGraph g, int origin, int[] targets, int strategy, int[] row) {
+        Arrays.fill(row, TravelTimeMatrix.UNREACHABLE);
+        if (origin < 0) return;
+        LineStateGraph sg = g.lineStates();
+        SearchWorkspace ws = SearchWorkspace.local();
+        LineAwareRouter.searchAll(sg, LineAwareRouter.weights(g, strategy), origin, ws);
+        for (int j = 0; j < targets.length; j++) {
+            int t = targets[j];
+            if (t == origin) row[j] = 0;
+            else if (t >= 0) {
+                int best = LineAwareRouter.bestState(sg, ws, t);
+                if (best >= 0) row[j] = ws.dist[best];
+            }
+        }
+    }
+
+    private static int[] stationIds(CompiledGraph g, List<String> stations) {
+        int[] ids = new int[stations.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = g.stationId(stations.get(i));
+        return ids;
+    }
+
+    /**
+     * 策略允许的交通方式掩码 (TransportMode 位)：只坐地铁包含市域 S 线
+     */
+    public static int allowedModes(int strategy) {
+        if (strategy == STRATEGY_BUS_ONLY) return TransportMode.BUS;
+        if (strategy == STRATEGY_METRO_ONLY) return TransportMode.RAIL;
+        return TransportMode.ALL;
+    }
+
+    // 出行时间以耗时为代价：换乘最少策略同样按耗时计
+    private static int timeStrategy(int strategy) {
+        return strategy == STRATEGY_TRANSFER ? STRATEGY_TIME : strategy;
+    }
+
+    // 起终点相同：原地不动
+    static RouteResult singleStation(CompiledGraph g, int station, int strategy) {
+        return new RouteResult(new ArrayList<>(Collections.singletonList(g.stationNames[station])),
+                new ArrayList<>(), 0, 0, strategyName(strategy), new ArrayList<>());
+    }
+
+    private RouteResult searchStationLabels(CompiledGraph g, int source, int target, int strategy) {
+
+        // 复用当前线程的工作区：标号数组 + 索引堆
+        SearchWorkspace ws = SearchWorkspace.local();
+        ws.reset(g.stationCount());
+        IntPriorityQueue pq = ws.heap;
+
+        ws.label(source, 0, -1, -1);
+        pq.push(source, 0);
+        boolean found = false;
+        int modes = allowedModes(strategy);
 
         while (!pq.isEmpty()) {
-            Node curr = pq.poll();
-            if (curr.cost > minCost.getOrDefault(curr.station, Integer.MAX_VALUE)) continue;
-            if (curr.station.equals(end)) { finalNode = curr; break; }
-
-            if (graph.adjList.get(curr.station) != null) {
-                for (Connection edge : graph.adjList.get(curr.station)) {
-                    // ★★★ 新增：类型过滤逻辑 ★★★
-                    boolean isBusLine = edge.lineName.contains("公交");
-                    
-                    // 如果是只坐公交，但当前线不是公交 -> 跳过
-                    if (strategy == STRATEGY_BUS_ONLY && !isBusLine) continue;
-                    
-                    // 如果是只坐地铁，但当前线是公交 -> 跳过
-                    if (strategy == STRATEGY_METRO_ONLY && isBusLine) continue;
-
-                    // 计算权重
-                    boolean transfer = isTransfer(curr, edge);
-                    int weight = 0;
-
-                    if (strategy == STRATEGY_TRANSFER) {
-                        // 换乘最少策略：换乘代价极大，路程代价极小
-                        weight = 1 + (transfer ? 1000 : 0);
-                    } else {
-                        // 时间最短、只坐公交、只坐地铁：都优先考虑时间
-                        // 基础时间 + 换乘罚时
-                        weight = edge.timeCost + (transfer ? 5 : 0);
-                    }
-
-                    int newCost = curr.cost + weight;
-                    if (newCost < minCost.getOrDefault(edge.toStation, Integer.MAX_VALUE)) {
-                        minCost.put(edge.toStation, newCost);
-                        Node next = new Node(edge.toStation, newCost, edge.lineName, edge, curr);
-                        // 记录实际耗时
-                        next.realTime = curr.realTime + edge.timeCost + (transfer ? 5 : 0);
-                        pq.add(next);
-                    }
+            int cost = pq.minKey();
+            int curr = pq.pop();
+            ws.settle(curr);
+            if (curr == target) { found = true; break; }
+
+            int arriveLine = ws.parentEdge[curr] < 0 ? -1 : g.lineIds[ws.parentEdge[curr]];
+            for (int e = g.offsets[curr], stop = g.offsets[curr + 1]; e < stop; e++) {
+                int line = g.lineIds[e];
+                // ★★★ 类型过滤：边的方式不在策略允许的掩码内 -> 跳过
+                if ((g.edgeModes[e] & modes) == 0) continue;
+
+                // 计算权重
+                boolean transfer = arriveLine >= 0 && arriveLine != line;
+                int weight;
+
+                if (strategy == STRATEGY_TRANSFER) {
+                    // 换乘最少策略：换乘代价极大，路程代价极小
+                    weight = 1 + (transfer ? 1000 : 0);
+                } else {
+                    // 时间最短、只坐公交、只坐地铁：都优先考虑时间
+                    // 基础时间 + 换乘罚时
+                    weight = g.costs[e] + (transfer ? TRANSFER_PENALTY : 0);
+                }
+
+                int next = g.targets[e];
+                int newCost = cost + weight;
+                if (newCost < ws.dist(next)) {
+                    ws.label(next, newCost, curr, e);
+                    pq.push(next, newCost);
                 }
             }
         }
-        return finalNode == null ? null : buildResult(finalNode, strategy);
-    }
-    
-    private boolean isTransfer(Node curr, Connection edge) {
-        return curr.arriveLine != null && !curr.arriveLine.equals(edge.lineName);
+        return found ? buildResult(g, target, ws.parent, ws.parentEdge, strategy) : null;
     }
 
-    private RouteResult buildResult(Node node, int strategy) {
+    private RouteResult buildResult(CompiledGraph g, int target, int[] parent, int[] parentEdge, int strategy) {
         LinkedList<String> path = new LinkedList<>();
         LinkedList<String> lineSegments = new LinkedList<>();
         LinkedList<String> transferPoints = new LinkedList<>();
-        
+
         // 换乘计数逻辑 (初始为0)
         int transfers = 0;
-        
-        Node temp = node;
-        Node prevNode = null;
-        
-        while(temp != null) {
-            path.addFirst(temp.station);
-            if (temp.arriveLine != null) lineSegments.addFirst(temp.arriveLine);
-            
-            if (prevNode != null && prevNode.arriveLine != null && temp.arriveLine != null && 
-                !prevNode.arriveLine.equals(temp.arriveLine)) {
-                transfers++; 
-                transferPoints.addFirst(temp.station);
+        // 实际耗时 = 乘车时间 + 换乘罚时
+        int realTime = 0;
+
+        int nextLine = -1;
+        for (int v = target; v >= 0; v = parent[v]) {
+            path.addFirst(g.stationNames[v]);
+            int e = parentEdge[v];
+            if (e < 0) break;
+
+            int line = g.lineIds[e];
+            lineSegments.addFirst(g.lineNames[line]);
+            realTime += g.costs[e];
+            if (nextLine >= 0 && nextLine != line) {
+                transfers++;
+                realTime += TRANSFER_PENALTY;
+                transferPoints.addFirst(g.stationNames[v]);
             }
-            prevNode = temp; temp = temp.parent;
+            nextLine = line;
         }
-        
-        String stName;
+
+        return new RouteResult(path, lineSegments, realTime, transfers, strategyName(strategy), transferPoints);
+    }
+
+    static String strategyName(int strategy) {
         switch (strategy) {
-            case STRATEGY_TIME: stName = "时间最短"; break;
-            case STRATEGY_TRANSFER: stName = "换乘最少"; break;
-            case STRATEGY_BUS_ONLY: stName = "只坐公交"; break;
-            case STRATEGY_METRO_ONLY: stName = "只坐地铁"; break;
-            default: stName = "自定义";
+            case STRATEGY_TIME: return "时间最短";
+            case STRATEGY_TRANSFER: return "换乘最少";
+            case STRATEGY_BUS_ONLY: return "只坐公交";
+            case STRATEGY_METRO_ONLY: return "只坐地铁";
+            default: return "自定义";
         }
-        
-        return new RouteResult(path, lineSegments, node.realTime, transfers, stName, transferPoints);
+    }
+
+    /**
+     * 两站之间的最少换乘次数 (查线路换乘矩阵，不搜索)，站点不存在或不可达时返回 -1
+     */
+    public int minTransfers(String start, String end) {
+        CompiledGraph g = graph.compiled();
+        int source = start == null ? -1 : g.stationId(start);
+        int target = end == null ? -1 : g.stationId(end);
+        if (source < 0 || target < 0) return -1;
+        int k = TransferRouter.of(g).minTransfers(g.lineStates(), source, target);
+        return k == TransferRouter.UNREACHABLE ? -1 : k;
+    }
+
+    /** 两站之间是否存在换乘不超过 k 次的路线 */
+    public boolean reachableWithin(String start, String end, int k) {
+        int min = minTransfers(start, end);
+        return min >= 0 && min <= k;
     }
 
     public List<String> getDirectLines(String station1, String station2) {
-        List<String> directLines = new ArrayList<>();
-        if (graph == null || graph.lineStationsMap == null) return directLines;
-        for (Map.Entry<String, List<String>> entry : graph.lineStationsMap.entrySet()) {
-            List<String> stations = entry.getValue();
-            if (stations.contains(station1) && stations.contains(station2)) {
-                directLines.add(entry.getKey());
-            }
-        }
-        return directLines;
-    }
-
-    static class Node {
-        String station;
-        int cost;
-        int realTime;
-        String arriveLine;
-        Connection edge;    // 到达当前站点所经过的边
-        Node parent;
-        public Node(String s, int c, String l, Connection edge, Node p) {
-            this.station = s; this.cost = c; this.arriveLine = l; this.edge = edge; this.parent = p;
-            this.realTime = (p == null) ? 0 : p.realTime;
-        }
+        if (graph == null) return new ArrayList<>();
+        // 两站所在线路的位图求交
+        return graph.index.commonLines(station1, station2);
     }
-}
\ No newline at end of file
+}
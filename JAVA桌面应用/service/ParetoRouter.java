@@ -0,0 +1,102 @@
+package service;
+
+import model.*;
+import java.util.*;
+
+/**
+ * (耗时, 换乘次数) 双目标的标号设定搜索。
+ * 每个状态按换乘次数保留一组标号 (元素编号 = 状态 * levels + 换乘次数，levels = 换乘上限 + 1)，
+ * 按 (耗时, 换乘次数) 字典序出堆；被换乘更少且不更慢的标号支配的标号直接丢弃。
+ * 一次搜索即得到终点的全部 Pareto 最优方案，时间最短、换乘最少都可从中直接读出。
+ */
+public final class ParetoRouter {
+    // 默认的换乘次数上限 (列出备选方案用)；需要更多换乘的方案由带上限参数的重载求出
+    public static final int MAX_TRANSFERS = 7;
+
+    private ParetoRouter() {}
+
+    /**
+     * 换乘不超过 MAX_TRANSFERS 次的 Pareto 最优方案
+     * @param w 以耗时为代价的边权表 (可含 EXCLUDED)
+     * @return 按换乘次数从少到多排列的 Pareto 最优方案，不可达时为空列表
+     */
+    public static List<RouteResult> search(LineStateGraph sg, int[] w, int source, int target,
+                                           SearchWorkspace ws, String strategyName) {
+        return search(sg, w, source, target, ws, strategyName, MAX_TRANSFERS);
+    }
+
+    /**
+     * 换乘不超过 maxTransfers 次的 Pareto 最优方案 (标号数为状态数 x (maxTransfers + 1))
+     */
+    public static List<RouteResult> search(LineStateGraph sg, int[] w, int source, int target,
+                                           SearchWorkspace ws, String strategyName, int maxTransfers) {
+        int levels = Math.max(0, maxTransfers) + 1;
+        ws.reset(sg.stateCount() * levels);
+        IntPriorityQueue pq = ws.heap;
+        for (int s = sg.stationStates[source]; s < sg.stationStates[source + 1]; s++) {
+            ws.label(s * levels, 0, -1, -1);
+            pq.push(s * levels, 0);
+        }
+
+        // 终点上已找到的方案 (按找到的顺序：耗时递增、换乘递减)
+        int[] found = new int[levels];
+        int foundCount = 0;
+        // 终点方案的最少换乘次数：方案按耗时递增找到，之后换乘不更少的标号都被支配
+        int targetMinTransfers = levels;
+
+        while (!pq.isEmpty()) {
+            int node = pq.pop();
+            int state = node / levels, k = node % levels;
+            int cost = ws.dist[node];
+            if (k >= targetMinTransfers || dominated(ws, levels, state, k, cost)) continue;
+            ws.settle(node);
+            if (sg.stateStation[state] == target) {
+                found[foundCount++] = node;
+                targetMinTransfers = k;
+                if (k == 0) break; // 不换乘的方案支配其后的一切
+                continue;
+            }
+
+            for (int e = sg.offsets[state], stop = sg.offsets[state + 1]; e < stop; e++) {
+                int weight = w[e];
+                if (weight == LineAwareRouter.EXCLUDED) continue;
+                int nk = sg.isTransfer(e) ? k + 1 : k;
+                if (nk >= levels) continue;
+                int newCost = cost + weight;
+                int next = sg.targets[e];
+                if (nk >= targetMinTransfers || dominated(ws, levels, next, nk + 1, newCost)) continue;
+                int nextNode = next * levels + nk;
+                if (newCost < ws.dist(nextNode)) {
+                    ws.label(nextNode, newCost, node, e);
+                    // 字典序：同耗时时换乘少的先出堆
+                    pq.push(nextNode, newCost * levels + nk);
+                }
+            }
+        }
+
+        List<RouteResult> results = new ArrayList<>(foundCount);
+        for (int i = foundCount - 1; i >= 0; i--) results.add(buildResult(sg, ws, levels, found[i], strategyName));
+        return results;
+    }
+
+    // state 上是否已有换乘次数小于 k、耗时不超过 cost 的标号
+    private static boolean dominated(SearchWorkspace ws, int levels, int state, int k, int cost) {
+        for (int j = 0; j < k; j++) {
+            int node = state * levels + j;
+            if (ws.reached(node) && ws.dist[node] <= cost) return true;
+        }
+        return false;
+    }
+
+    private static RouteResult buildResult(LineStateGraph sg, SearchWorkspace ws, int levels, int endNode, String strategyName) {
+        int count = 0;
+        for (int x = endNode; ws.parent[x] >= 0; x = ws.parent[x]) count++;
+        int[] edges = ws.pathBuffer(count);
+        int first = endNode;
+        for (int i = count - 1; i >= 0; i--) {
+            edges[i] = ws.parentEdge[first];
+            first = ws.parent[first];
+        }
+        return LineAwareRouter.toRoute(sg, first / levels, edges, count, strategyName);
+    }
+}
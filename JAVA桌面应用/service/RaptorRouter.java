@@ -0,0 +1,200 @@
+package service;
+
+import model.*;
+import java.util.*;
+
+/**
+ * 基于轮次的 RAPTOR 时刻表路由：第 k 轮只扫描上一轮被改进的站点所在的线路模式，
+ * 得到"最多乘 k 段车"的最早到达时间。每一轮对应一种换乘次数，
+ * 因此一次查询即可得到 (到达时间, 换乘次数) 的全部 Pareto 最优行程。
+ * 全程顺序扫描基本类型数组，不使用堆。
+ */
+public final class RaptorRouter {
+    // 最多乘车段数 (换乘次数 + 1)
+    public static final int MAX_ROUNDS = 8;
+
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    private static final ThreadLocal<Rounds> LOCAL = ThreadLocal.withInitial(Rounds::new);
+
+    private RaptorRouter() {}
+
+    /**
+     * 在 departure (当日分钟数) 从 source 出发前往 target，按换乘次数从少到多返回 Pareto 最优行程
+     * (每条行程都比换乘更少的行程到达得更早)；不可达时返回空列表
+     */
+    public static List<RouteResult> search(Timetable tt, int source, int target, int departure,
+                                           int headway, int strategy, String strategyName) {
+        CompiledGraph g = tt.base;
+        int n = g.stationCount();
+        Rounds r = LOCAL.get();
+        r.reset(n);
+        r.ensurePatterns(tt.patternCount());
+        r.arrival[source] = departure;
+        r.ready[source] = departure; // 起点上车不计换乘罚时
+        r.best[source] = departure;
+        r.mark(source);
+
+        List<RouteResult> journeys = new ArrayList<>();
+        for (int k = 1; k <= MAX_ROUNDS && r.markedCount > 0; k++) {
+            r.carry(k, n);
+            collectPatterns(tt, r);
+            int base = k * n, prev = (k - 1) * n;
+            for (int q = 0; q < r.queuedCount; q++) {
+                int p = r.queued[q];
+                int from = r.queueFrom[p];
+                r.queueFrom[p] = -1;
+                if (!allowed(g, tt.patternLine[p], strategy)) continue;
+                scanPattern(tt, r, p, from, base, prev, target, headway);
+            }
+            if (r.arrival[base + target] < r.arrival[prev + target]) {
+                journeys.add(toRoute(tt, r, source, target, k, departure, strategyName));
+            }
+        }
+        return journeys;
+    }
+
+    // 上一轮被改进的站点 -> 需要扫描的模式 (记录每个模式中最靠前的上车位置)
+    private static void collectPatterns(Timetable tt, Rounds r) {
+        r.queuedCount = 0;
+        for (int m = 0; m < r.markedCount; m++) {
+            int v = r.marked[m];
+            r.isMarked[v] = false;
+            for (int x = tt.stopOffsets[v]; x < tt.stopOffsets[v + 1]; x++) {
+                int p = tt.stopPatterns[x], i = tt.stopPositions[x];
+                if (r.queueFrom[p] < 0) {
+                    r.queued[r.queuedCount++] = p;
+                    r.queueFrom[p] = i;
+                } else if (i < r.queueFrom[p]) {
+                    r.queueFrom[p] = i;
+                }
+            }
+        }
+        r.markedCount = 0;
+    }
+
+    private static void scanPattern(Timetable tt, Rounds r, int p, int from, int base, int prev,
+                                    int target, int headway) {
+        int trip = -1, tripStart = 0, board = -1;
+        for (int i = from, end = tt.patternOffsets[p + 1]; i < end; i++) {
+            int v = tt.patternStops[i];
+            // 1. 已在车上：尝试改进到达时间 (同时以终点的最好成绩剪枝)
+            if (trip >= 0) {
+                int arrive = tripStart + tt.patternTimes[i];
+                if (arrive < r.best[v] && arrive < r.best[target]) {
+                    r.arrival[base + v] = arrive;
+                    r.ready[base + v] = arrive + NavigationService.TRANSFER_PENALTY;
+                    r.viaPattern[base + v] = p;
+                    r.viaBoard[base + v] = board;
+                    r.viaAlight[base + v] = i;
+                    r.best[v] = arrive;
+                    r.mark(v);
+                }
+            }
+            // 2. 上一轮能在此站更早上车时，换乘更早的班次
+            int ready = r.ready[prev + v];
+            if (ready == UNREACHED || (trip >= 0 && ready > tripStart + tt.patternTimes[i])) continue;
+            int earlier = tt.earliestTrip(p, i, ready, headway);
+            if (earlier >= 0 && (trip < 0 || earlier < trip)) {
+                trip = earlier;
+                tripStart = tt.tripStart(p, trip, headway);
+                board = i;
+            }
+        }
+    }
+
+    private static boolean allowed(CompiledGraph g, int line, int strategy) {
+        return (g.lineModes[line] & NavigationService.allowedModes(strategy)) != 0;
+    }
+
+    /**
+     * 从第 k 轮的终点标号逐段回溯：每段在同一模式上从上车位置乘到下车位置
+     */
+    private static RouteResult toRoute(Timetable tt, Rounds r, int source, int target, int k,
+                                       int departure, String strategyName) {
+        CompiledGraph g = tt.base;
+        int n = g.stationCount();
+        Deque<int[]> legs = new ArrayDeque<>();
+        for (int v = target; v != source; k--) {
+            // 标号可能是更早的轮次留下的
+            while (r.viaPattern[k * n + v] < 0) k--;
+            int slot = k * n + v;
+            legs.addFirst(new int[]{r.viaPattern[slot], r.viaBoard[slot], r.viaAlight[slot]});
+            v = tt.patternStops[r.viaBoard[slot]];
+        }
+
+        List<String> path = new ArrayList<>();
+        List<String> lineSegments = new ArrayList<>();
+        List<String> transferPoints = new ArrayList<>();
+        path.add(g.stationNames[source]);
+        for (int[] leg : legs) {
+            if (path.size() > 1) transferPoints.add(path.get(path.size() - 1));
+            String line = g.lineNames[tt.patternLine[leg[0]]];
+            for (int i = leg[1] + 1; i <= leg[2]; i++) {
+                path.add(g.stationNames[tt.patternStops[i]]);
+                lineSegments.add(line);
+            }
+        }
+        int arrival = r.best[target];
+        RouteResult result = new RouteResult(path, lineSegments, arrival - departure,
+                legs.size() - 1, strategyName, transferPoints);
+        result.departureTime = departure;
+        result.arrivalTime = arrival;
+        return result;
+    }
+
+    /**
+     * 每个线程复用的轮次数组：第 k 轮站点 v 的数据位于下标 k * n + v
+     */
+    private static final class Rounds {
+        int[] arrival = new int[0], ready = new int[0];
+        int[] viaPattern = new int[0], viaBoard = new int[0], viaAlight = new int[0];
+        int[] best = new int[0];
+        int[] marked = new int[0];
+        boolean[] isMarked = new boolean[0];
+        int markedCount;
+        int[] queued = new int[0], queueFrom = new int[0];
+        int queuedCount;
+
+        void reset(int n) {
+            int size = (MAX_ROUNDS + 1) * n;
+            if (arrival.length < size) {
+                arrival = new int[size];
+                ready = new int[size];
+                viaPattern = new int[size];
+                viaBoard = new int[size];
+                viaAlight = new int[size];
+            }
+            if (best.length < n) {
+                best = new int[n];
+                marked = new int[n];
+                isMarked = new boolean[n];
+            }
+            Arrays.fill(arrival, 0, n, UNREACHED);
+            Arrays.fill(ready, 0, n, UNREACHED);
+            Arrays.fill(viaPattern, 0, n, -1);
+            Arrays.fill(best, 0, n, UNREACHED);
+            Arrays.fill(isMarked, 0, n, false);
+            markedCount = 0;
+        }
+
+        // 第 k 轮以上一轮的结果为初值
+        void carry(int k, int n) {
+            System.arraycopy(arrival, (k - 1) * n, arrival, k * n, n);
+            System.arraycopy(ready, (k - 1) * n, ready, k * n, n);
+            Arrays.fill(viaPattern, k * n, (k + 1) * n, -1);
+        }
+
+        void mark(int v) {
+            if (isMarked[v]) return;
+            isMarked[v] = true;
+            marked[markedCount++] = v;
+        }
+
+        void ensurePatterns(int patterns) {
+            if (queueFrom.length >= patterns) return;
+            queued = new int[patterns];
+            queueFrom = new int[patterns];
+            Arrays.fill(queueFrom, -1);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package service;
+
+import java.lang.ref.SoftReference;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 以 (起点, 终点, 策略) 为键的有界 LRU 路径缓存。
+ * 每个条目都属于某个图版本，查询时版本号变化 (任何修改都会递增) 即整体清空，
+ * 因此不会返回过期路径。可选用软引用保存结果，内存紧张时由 GC 回收。
+ * 结果对象可变时应提供复制函数：缓存只保存副本，每次返回新的副本，调用方的修改不会影响缓存。
+ */
+public final class RouteCache<V> {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // 不可达结果的占位，避免反复搜索同一对不连通的站点
+    private static final Object NO_ROUTE = new Object();
+
+    private final int capacity;
+    private final boolean softValues;
+    // 写入与读取时对结果做的复制 (不可变结果用 UnaryOperator.identity())
+    private final UnaryOperator<V> copier;
+    private final LinkedHashMap<Key, Object> entries;
+    // 当前条目所属的图版本
+    private long version = -1;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RouteCache(int capacity, boolean softValues) {
+        this(capacity, softValues, UnaryOperator.identity());
+    }
+
+    public RouteCache(int capacity, boolean softValues, UnaryOperator<V> copier) {
+        this.capacity = Math.max(1, capacity);
+        this.softValues = softValues;
+        this.copier = copier;
+        this.entries = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                if (size() <= RouteCache.this.capacity) return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * 读取缓存，未命中时调用 loader 计算 (在锁外执行，不阻塞其它查询) 并写入其副本
+     * @param graphVersion 调用方在计算前读取的图版本号
+     */
+    @SuppressWarnings("unchecked")
+    public V get(String start, String end, int strategy, long graphVersion, Supplier<V> loader) {
+        Key key = new Key(start, end, strategy);
+        synchronized (entries) {
+            if (graphVersion != version) {
+                entries.clear();
+                version = graphVersion;
+            }
+            Object stored = entries.get(key);
+            if (stored instanceof SoftReference) {
+                stored = ((SoftReference<?>) stored).get();
+                if (stored == null) entries.remove(key); // 已被 GC 回收
+            }
+            if (stored != null) {
+                hits.increment();
+                return stored == NO_ROUTE ? null : copier.apply((V) stored);
+            }
+        }
+        misses.increment();
+        V value = loader.get();
+        synchronized (entries) {
+            // 计算期间图已被修改：结果不再写入
+            if (graphVersion == version) {
+                Object stored = value == null ? NO_ROUTE : copier.apply(value);
+                entries.put(key, softValues && value != null ? new SoftReference<>(stored) : stored);
+            }
+        }
+        return value;
+    }
+
+    public void clear() {
+        synchronized (entries) { entries.clear(); }
+    }
+
+    public int size() {
+        synchronized (entries) { return entries.size(); }
+    }
+
+    public int capacity() { return capacity; }
+    public long hitCount() { return hits.sum(); }
+    public long missCount() { return misses.sum(); }
+    public long evictionCount() { return evictions.sum(); }
+
+    public double hitRate() {
+        long h = hits.sum(), total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("缓存 %d/%d 条，命中 %d，未命中 %d (命中率 %.1f%%)，淘汰 %d",
+                size(), capacity, hitCount(), missCount(), hitRate() * 100, evictionCount());
+    }
+
+    private static final class Key {
+        final String start, end;
+        final int strategy;
+        final int hash;
+
+        Key(String start, String end, int strategy) {
+            this.start = start;
+            this.end = end;
+            this.strategy = strategy;
+            this.hash = (start.hashCode() * 31 + end.hashCode()) * 31 + strategy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return strategy == k.strategy && start.equals(k.start) && end.equals(k.end);
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+    }
+}
@@ -0,0 +1,220 @@
+package service;
+
+import model.*;
+import java.util.*;
+
+/**
+ * 可配置的路径策略：换乘罚时、每站固定代价、各交通方式的耗时权重、避开的线路/站点、换乘次数上限。
+ * 策略在搜索前编译为状态图上的逐边代价表 (被排除的边为 {@link LineAwareRouter#EXCLUDED})，
+ * 搜索热循环只读数组，不再判断任何规则；新增策略只需组合这些参数，无需改动引擎。
+ * 对象不可变，with / avoid 方法返回新策略；内容相同的策略相等，可直接作为快照派生缓存的 key。
+ */
+public final class RouteStrategy {
+    // 不限换乘次数
+    public static final int UNLIMITED = -1;
+    // 耗时权重的基准 (百分比)
+    public static final int WEIGHT_SCALE = 100;
+
+    // 原有四种策略
+    private static final RouteStrategy[] PRESETS = {
+            new RouteStrategy("时间最短", NavigationService.TRANSFER_PENALTY, 0, uniformWeights(WEIGHT_SCALE),
+                    TransportMode.ALL, Collections.emptySet(), Collections.emptySet(), UNLIMITED),
+            // 换乘最少：换乘代价极大，每站代价极小
+            new RouteStrategy("换乘最少", 1000, 1, uniformWeights(0),
+                    TransportMode.ALL, Collections.emptySet(), Collections.emptySet(), UNLIMITED),
+            new RouteStrategy("只坐公交", NavigationService.TRANSFER_PENALTY, 0, uniformWeights(WEIGHT_SCALE),
+                    TransportMode.BUS, Collections.emptySet(), Collections.emptySet(), UNLIMITED),
+            new RouteStrategy("只坐地铁", NavigationService.TRANSFER_PENALTY, 0, uniformWeights(WEIGHT_SCALE),
+                    TransportMode.RAIL, Collections.emptySet(), Collections.emptySet(), UNLIMITED),
+    };
+
+    public final String name;
+    // 每次换乘的代价
+    public final int transferPenalty;
+    // 每乘一站的固定代价
+    public final int stopCost;
+    // 交通方式 (按位序号) -> 耗时权重 (百分比，100 即按实际耗时)
+    private final int[] modeWeights;
+    // 允许乘坐的交通方式掩码
+    public final int allowedModes;
+    public final Set<String> avoidLines;
+    public final Set<String> avoidStations;
+    // 换乘次数上限，UNLIMITED 表示不限
+    public final int maxTransfers;
+
+    private RouteStrategy(String name, int transferPenalty, int stopCost, int[] modeWeights, int allowedModes,
+                          Set<String> avoidLines, Set<String> avoidStations, int maxTransfers) {
+        if (transferPenalty < 0 || stopCost < 0) throw new IllegalArgumentException("代价不能为负");
+        this.name = name;
+        this.transferPenalty = transferPenalty;
+        this.stopCost = stopCost;
+        this.modeWeights = modeWeights;
+        this.allowedModes = allowedModes;
+        this.avoidLines = Collections.unmodifiableSet(avoidLines);
+        this.avoidStations = Collections.unmodifiableSet(avoidStations);
+        this.maxTransfers = maxTransfers < 0 ? UNLIMITED : maxTransfers;
+    }
+
+    /** NavigationService.STRATEGY_* 对应的策略，未知取值按时间最短处理 */
+    public static RouteStrategy of(int strategy) {
+        if (strategy >= 0 && strategy < PRESETS.length) return PRESETS[strategy];
+        return PRESETS[NavigationService.STRATEGY_TIME].named(NavigationService.strategyName(strategy));
+    }
+
+    private static int[] uniformWeights(int weight) {
+        int[] weights = new int[Integer.SIZE];
+        Arrays.fill(weights, weight);
+        return weights;
+    }
+
+    // ========== 派生新策略 ==========
+
+    public RouteStrategy named(String name) {
+        return new RouteStrategy(name, transferPenalty, stopCost, modeWeights, allowedModes,
+                avoidLines, avoidStations, maxTransfers);
+    }
+
+    public RouteStrategy withTransferPenalty(int penalty) {
+        return new RouteStrategy(name, penalty, stopCost, modeWeights, allowedModes,
+                avoidLines, avoidStations, maxTransfers);
+    }
+
+    public RouteStrategy withStopCost(int cost) {
+        return new RouteStrategy(name, transferPenalty, cost, modeWeights, allowedModes,
+                avoidLines, avoidStations, maxTransfers);
+    }
+
+    /**
+     * 设置某种交通方式 (TransportMode 的单个位) 的耗时权重，如公交 150 表示公交耗时按 1.5 倍计
+     */
+    public RouteStrategy withModeWeight(int mode, int percent) {
+        if (Integer.bitCount(mode) != 1) throw new IllegalArgumentException("只能设置单一交通方式: " + mode);
+        if (percent < 0) throw new IllegalArgumentException("权重不能为负");
+        int[] weights = modeWeights.clone();
+        weights[Integer.numberOfTrailingZeros(mode)] = percent;
+        return new RouteStrategy(name, transferPenalty, stopCost, weights, allowedModes,
+                avoidLines, avoidStations, maxTransfers);
+    }
+
+    public RouteStrategy withModes(int modes) {
+        return new RouteStrategy(name, transferPenalty, stopCost, modeWeights, modes,
+                avoidLines, avoidStations, maxTransfers);
+    }
+
+    public RouteStrategy withMaxTransfers(int max) {
+        return new RouteStrategy(name, transferPenalty, stopCost, modeWeights, allowedModes,
+                avoidLines, avoidStations, max);
+    }
+
+    public RouteStrategy avoidLines(Collection<String> lines) {
+        Set<String> set = new TreeSet<>(avoidLines);
+        set.addAll(lines);
+        return new RouteStrategy(name, transferPenalty, stopCost, modeWeights, allowedModes,
+                set, avoidStations, maxTransfers);
+    }
+
+    public RouteStrategy avoidStations(Collection<String> stations) {
+        Set<String> set = new TreeSet<>(avoidStations);
+        set.addAll(stations);
+        return new RouteStrategy(name, transferPenalty, stopCost, modeWeights, allowedModes,
+                avoidLines, set, maxTransfers);
+    }
+
+    /** 取消对这些站点的避让 (查询的起终点不能被避开) */
+    public RouteStrategy allowStations(Collection<String> stations) {
+        if (Collections.disjoint(avoidStations, stations)) return this;
+        Set<String> set = new TreeSet<>(avoidStations);
+        set.removeAll(stations);
+        return new RouteStrategy(name, transferPenalty, stopCost, modeWeights, allowedModes,
+                avoidLines, set, maxTransfers);
+    }
+
+    /**
+     * 交通方式的耗时权重 (百分比)；兼有多种方式的线路可按其中任一方式乘坐，取这些方式中最小的权重
+     */
+    public int modeWeight(int mode) {
+        if (mode == 0) return WEIGHT_SCALE;
+        int weight = Integer.MAX_VALUE;
+        for (int bits = mode; bits != 0; bits &= bits - 1) {
+            weight = Math.min(weight, modeWeights[Integer.numberOfTrailingZeros(bits)]);
+        }
+        return weight;
+    }
+
+    // ========== 编译 ==========
+
+    /**
+     * 编译为状态图上的逐边代价表：先把避开的线路、站点和不允许的方式展开为位图，
+     * 再逐边计算一次代价。进入被排除状态的边 (乘车或换乘) 记为 EXCLUDED
+     */
+    int[] compile(CompiledGraph g) {
+        LineStateGraph sg = g.lineStates();
+        BitSet excludedLines = new BitSet(g.lineCount());
+        for (int line = 0; line < g.lineCount(); line++) {
+            if ((g.lineModes[line] & allowedModes) == 0) excludedLines.set(line);
+        }
+        for (String line : avoidLines) {
+            int id = g.lineId(line);
+            if (id >= 0) excludedLines.set(id);
+        }
+        BitSet excludedStations = new BitSet(g.stationCount());
+        for (String station : avoidStations) {
+            int id = g.stationId(station);
+            if (id >= 0) excludedStations.set(id);
+        }
+        // 线路 -> 耗时权重 (只在允许的方式中取，兼有多种方式时取最小)
+        int[] lineWeight = new int[g.lineCount()];
+        for (int line = 0; line < lineWeight.length; line++) {
+            int mode = g.lineModes[line];
+            lineWeight[line] = modeWeight((mode & allowedModes) != 0 ? mode & allowedModes : mode);
+        }
+
+        int[] w = new int[sg.edgeCount()];
+        for (int s = 0; s < sg.stateCount(); s++) {
+            for (int e = sg.offsets[s]; e < sg.offsets[s + 1]; e++) {
+                int to = sg.targets[e];
+                int line = sg.stateLine[to];
+                if (excludedLines.get(line) || excludedStations.get(sg.stateStation[to])) {
+                    w[e] = LineAwareRouter.EXCLUDED;
+                } else if (sg.isTransfer(e)) {
+                    w[e] = transferPenalty;
+                } else {
+                    w[e] = stopCost + (sg.times[e] * lineWeight[line] + WEIGHT_SCALE / 2) / WEIGHT_SCALE;
+                }
+            }
+        }
+        return w;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RouteStrategy)) return false;
+        RouteStrategy s = (RouteStrategy) o;
+        return transferPenalty == s.transferPenalty && stopCost == s.stopCost && allowedModes == s.allowedModes
+                && maxTransfers == s.maxTransfers && Arrays.equals(modeWeights, s.modeWeights)
+                && avoidLines.equals(s.avoidLines) && avoidStations.equals(s.avoidStations);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = transferPenalty;
+        h = h * 31 + stopCost;
+        h = h * 31 + allowedModes;
+        h = h * 31 + maxTransfers;
+        h = h * 31 + Arrays.hashCode(modeWeights);
+        h = h * 31 + avoidLines.hashCode();
+        return h * 31 + avoidStations.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(name).append(" [换乘罚时 ").append(transferPenalty);
+        if (stopCost > 0) sb.append(", 每站 ").append(stopCost);
+        if (allowedModes != TransportMode.ALL) sb.append(", 方式 ").append(allowedModes);
+        if (!avoidLines.isEmpty()) sb.append(", 避开线路 ").append(avoidLines);
+        if (!avoidStations.isEmpty()) sb.append(", 避开站点 ").append(avoidStations);
+        if (maxTransfers != UNLIMITED) sb.append(", 最多换乘 ").append(maxTransfers).append(" 次");
+        return sb.append(']').toString();
+    }
+}
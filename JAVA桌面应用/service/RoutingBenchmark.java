@@ -0,0 +1,321 @@
+package service;
+
+import model.*;
+import java.util.*;
+
+/**
+ * 路径引擎性能对比 (开发工具)：
+ * 在南京 routes.txt 与按比例放大的合成网格网络上，用固定的随机起终点对比较各引擎的平均查询耗时，
+ * 每个引擎分别使用二叉堆与桶队列各测一次；最后在较大的合成网格上对比不同站点编号顺序下的访存局部性。
+ * 用法：java service.RoutingBenchmark [routes.txt] [合成网格边长] [编号对比网格边长]
+ */
+public class RoutingBenchmark {
+    private static final int QUERIES = 2000;
+
+    private static final int[] ENGINES = {
+        NavigationService.ENGINE_STATION,
+        NavigationService.ENGINE_LINE_AWARE,
+        NavigationService.ENGINE_BIDIRECTIONAL,
+        NavigationService.ENGINE_ASTAR,
+        NavigationService.ENGINE_ALT,
+        NavigationService.ENGINE_CH,
+        NavigationService.ENGINE_OVERLAY
+    };
+    // 对比的优先队列实现 (与表头顺序一致)
+    private static final int[] QUEUE_TYPES = {SearchWorkspace.QUEUE_BINARY_HEAP, SearchWorkspace.QUEUE_BUCKET};
+
+    // 对比的站点编号顺序
+    private static final int[] ORDERS = {CompiledGraph.ORDER_INSERTION, CompiledGraph.ORDER_HILBERT, CompiledGraph.ORDER_BFS};
+    private static final String[] ORDER_NAMES = {"哈希顺序", "Hilbert曲线", "沿线路BFS"};
+    // 编号对比使用大网格，减少查询次数：点对点查询数，及做全图搜索的起点数
+    private static final int LOCALITY_QUERIES = 200;
+    private static final int SWEEPS = 50;
+
+    private static final String[] ENGINE_NAMES = {"单标号Dijkstra", "状态图Dijkstra", "双向Dijkstra", "A*(地理)", "ALT(路标)", "收缩层次CH", "多层覆盖图"};
+
+    public static void main(String[] args) {
+        String routesFile = args.length > 0 ? args[0] : "routes.txt";
+        int gridSize = args.length > 1 ? Integer.parseInt(args[1]) : 80;
+
+        TransportGraph nanjing = new TransportGraph();
+        if (nanjing.loadFromFile(routesFile)) {
+            run("南京 " + routesFile, nanjing);
+        } else {
+            System.out.println("未找到 " + routesFile + "，跳过");
+        }
+        run("合成网格 " + gridSize + "x" + gridSize, syntheticGrid(gridSize));
+
+        int localitySize = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        locality("合成网格 " + localitySize + "x" + localitySize, () -> syntheticGrid(localitySize));
+    }
+
+    /**
+     * 同一网络按不同站点编号顺序编译，比较对缓存敏感的搜索 (全图 Dijkstra、点对点查询) 的耗时，
+     * 以及状态图中边两端状态编号的平均跨度 (跨度越小，搜索时相继访问的元素越可能在同一缓存行)
+     */
+    private static void locality(String title, java.util.function.Supplier<TransportGraph> factory) {
+        TransportGraph[] graphs = new TransportGraph[ORDERS.length];
+        CompiledGraph[] snapshots = new CompiledGraph[ORDERS.length];
+        for (int i = 0; i < ORDERS.length; i++) {
+            graphs[i] = factory.get();
+            graphs[i].setStationOrder(ORDERS[i]);
+            snapshots[i] = graphs[i].compiled();
+            snapshots[i].lineStates();
+        }
+
+        CompiledGraph first = snapshots[0];
+        System.out.printf("== 编号顺序对比 %s: %d 站, %d 个状态, %d 条状态边%n",
+                title, first.stationCount(), first.lineStates().stateCount(), first.lineStates().edgeCount());
+        // 起终点按站名选取，各顺序下查询相同的站点
+        String[] names = first.stationNames.clone();
+        Arrays.sort(names);
+        Random rnd = new Random(42);
+        String[][] pairs = new String[LOCALITY_QUERIES][];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = new String[]{names[rnd.nextInt(names.length)], names[rnd.nextInt(names.length)]};
+        }
+        String[] sources = new String[SWEEPS];
+        for (int i = 0; i < sources.length; i++) sources[i] = names[rnd.nextInt(names.length)];
+
+        NavigationService[] services = new NavigationService[graphs.length];
+        for (int i = 0; i < graphs.length; i++) {
+            services[i] = new NavigationService(graphs[i]);
+            sweep(snapshots[i], sources);
+            query(services[i], pairs, NavigationService.ENGINE_LINE_AWARE);
+            query(services[i], pairs, NavigationService.ENGINE_BIDIRECTIONAL);
+        }
+
+        System.out.printf("   %-12s %10s %8s %14s %14s %14s%n", "", "平均边跨度", "同缓存行", "全图Dijkstra", "状态图Dijkstra", "双向Dijkstra");
+        for (int i = 0; i < graphs.length; i++) {
+            CompiledGraph g = snapshots[i];
+            if (g.stationOrder != ORDERS[i]) System.out.printf("   !! %s 的快照编号顺序不符%n", ORDER_NAMES[i]);
+            LineStateGraph sg = g.lineStates();
+            long span = 0;
+            int near = 0;
+            for (int s = 0; s < sg.stateCount(); s++) {
+                for (int e = sg.offsets[s]; e < sg.offsets[s + 1]; e++) {
+                    int d = Math.abs(sg.targets[e] - s);
+                    span += d;
+                    if (d < 16) near++; // 16 个 int 为一个 64 字节缓存行
+                }
+            }
+            long begin = System.nanoTime();
+            long checksum = sweep(g, sources);
+            double sweepMs = (System.nanoTime() - begin) / 1e6 / sources.length;
+            begin = System.nanoTime();
+            checksum += query(services[i], pairs, NavigationService.ENGINE_LINE_AWARE);
+            double p2p = (System.nanoTime() - begin) / 1000.0 / pairs.length;
+            begin = System.nanoTime();
+            checksum += query(services[i], pairs, NavigationService.ENGINE_BIDIRECTIONAL);
+            double bidirectional = (System.nanoTime() - begin) / 1000.0 / pairs.length;
+            System.out.printf("   %-12s %10.1f %7.1f%% %11.2f ms %11.1f µs %11.1f µs  (校验和 %d)%n",
+                    ORDER_NAMES[i], (double) span / sg.edgeCount(), 100.0 * near / sg.edgeCount(),
+                    sweepMs, p2p, bidirectional, checksum);
+        }
+    }
+
+    // 从每个起点做一次全图 Dijkstra，返回各次可达状态的距离之和
+    private static long sweep(CompiledGraph g, String[] sources) {
+        LineStateGraph sg = g.lineStates();
+        int[] w = LineAwareRouter.weights(g, NavigationService.STRATEGY_TIME);
+        SearchWorkspace ws = SearchWorkspace.local();
+        long checksum = 0;
+        for (String source : sources) {
+            LineAwareRouter.searchAll(sg, w, g.stationId(source), ws);
+            for (int s = 0; s < sg.stateCount(); s++) if (ws.reached(s)) checksum += ws.dist[s];
+        }
+        return checksum;
+    }
+
+    private static void run(String title, TransportGraph graph) {
+        CompiledGraph g = graph.compiled();
+        LineStateGraph sg = g.lineStates();
+        System.out.printf("== %s: %d 站, %d 条线路, %d 个状态, %d 条状态边%n",
+                title, g.stationCount(), g.lineCount(), sg.stateCount(), sg.edgeCount());
+
+        NavigationService service = new NavigationService(graph);
+        // 首次 CH 查询会触发预处理 (未指定数据文件，不读写磁盘)
+        long begin = System.nanoTime();
+        service.search(g.stationNames[0], g.stationNames[0], NavigationService.STRATEGY_TIME, NavigationService.ENGINE_CH);
+        service.search(g.stationNames[0], g.stationNames[g.stationCount() - 1], NavigationService.STRATEGY_TIME, NavigationService.ENGINE_CH);
+        System.out.printf("   CH 预处理 %.1f ms%n", (System.nanoTime() - begin) / 1e6);
+        begin = System.nanoTime();
+        MultilevelOverlay overlay = service.getOverlay(NavigationService.STRATEGY_TIME);
+        System.out.printf("   多层覆盖图预处理 %.1f ms，%s%n", (System.nanoTime() - begin) / 1e6, overlay.report());
+
+        String[][] pairs = randomPairs(g, QUERIES, 42);
+        int queueType = SearchWorkspace.getQueueType();
+        System.out.printf("   %-16s %10s %10s  %-12s%n", "", "二叉堆", "桶队列", "平均出堆");
+        for (int i = 0; i < ENGINES.length; i++) {
+            // 两种队列都预热后再分别计时，避免 JIT 先后顺序影响对比
+            for (int queue : QUEUE_TYPES) {
+                SearchWorkspace.setQueueType(queue);
+                query(service, pairs, ENGINES[i]);
+            }
+            double[] micros = new double[QUEUE_TYPES.length];
+            long checksum = 0;
+            for (int q = 0; q < QUEUE_TYPES.length; q++) {
+                SearchWorkspace.setQueueType(QUEUE_TYPES[q]);
+                begin = System.nanoTime();
+                long sum = query(service, pairs, ENGINES[i]);
+                micros[q] = (System.nanoTime() - begin) / 1000.0 / pairs.length;
+                // 单标号引擎在等价路径间的取舍依赖出堆顺序，结果可能不同；其余引擎是精确的
+                if (q > 0 && sum != checksum && ENGINES[i] != NavigationService.ENGINE_STATION) {
+                    System.out.printf("   !! %s 两种队列结果不一致%n", ENGINE_NAMES[i]);
+                }
+                checksum = sum;
+            }
+            System.out.printf("   %-16s %7.1f µs %7.1f µs  %8.1f  (校验和 %d)%n",
+                    ENGINE_NAMES[i], micros[0], micros[1], settled(service, pairs, ENGINES[i]), checksum);
+        }
+        SearchWorkspace.setQueueType(queueType);
+
+        // 中心点标签：只求耗时，校验和应与各精确引擎一致
+        begin = System.nanoTime();
+        HubLabels labels = service.getHubLabels();
+        System.out.printf("   中心点标签构建 %.1f ms，%s%n", (System.nanoTime() - begin) / 1e6, labels.report());
+        travelTimes(service, pairs);
+        begin = System.nanoTime();
+        long hubChecksum = travelTimes(service, pairs);
+        System.out.printf("   %-16s %10.2f µs/次  (校验和 %d)%n", "中心点标签",
+                (System.nanoTime() - begin) / 1000.0 / pairs.length, hubChecksum);
+
+        // 时刻表引擎：08:00 出发的最早到达 (校验和为到达时间之和)
+        timetable(service, pairs);
+        begin = System.nanoTime();
+        long checksum = timetable(service, pairs);
+        System.out.printf("   %-16s %10.1f µs/次  (校验和 %d)%n", "RAPTOR(08:00)",
+                (System.nanoTime() - begin) / 1000.0 / pairs.length, checksum);
+
+        connectionScan(service, pairs);
+        begin = System.nanoTime();
+        checksum = connectionScan(service, pairs);
+        System.out.printf("   %-16s %10.1f µs/次  (校验和 %d，%d 条连接)%n", "CSA(08:00)",
+                (System.nanoTime() - begin) / 1000.0 / pairs.length, checksum, g.connections(service.getHeadway()).size());
+
+        // 最后修改数据 (会使上面的预处理失效)：改坐标、改耗时后多层覆盖图应与状态图 Dijkstra 一致
+        overlayAfterEdits(graph, service, pairs);
+    }
+
+    /**
+     * 多层覆盖图的回归校验：交换两个站点的坐标 (Hilbert 编号下站点会重新编号)、修改一段耗时，
+     * 每次修改后与状态图 Dijkstra 逐对比较耗时，打印不一致 (含异常) 的查询数
+     */
+    private static void overlayAfterEdits(TransportGraph graph, NavigationService service, String[][] pairs) {
+        CompiledGraph g = graph.compiled();
+        String a = g.stationNames[0], b = g.stationNames[g.stationCount() - 1];
+        int[] ca = graph.getStationCoords(a), cb = graph.getStationCoords(b);
+        if (ca != null && cb != null) {
+            graph.updateStationCoord(a, cb[0], cb[1]);
+            graph.updateStationCoord(b, ca[0], ca[1]);
+            System.out.printf("   修改坐标后 %-10s 不一致 %d / %d%n", "多层覆盖图", overlayMismatches(service, pairs), pairs.length);
+        }
+        if (g.offsets[1] == g.offsets[0]) return;
+        int e = g.offsets[0];
+        if (graph.updateConnectionTime(g.lineNames[g.lineIds[e]], g.stationNames[0], g.stationNames[g.targets[e]], g.costs[e] + 7)) {
+            System.out.printf("   修改耗时后 %-10s 不一致 %d / %d (重新定制 %d 个单元)%n", "多层覆盖图",
+                    overlayMismatches(service, pairs), pairs.length,
+                    service.getOverlay(NavigationService.STRATEGY_TIME).customizedCells);
+        }
+    }
+
+    private static int overlayMismatches(NavigationService service, String[][] pairs) {
+        int mismatches = 0;
+        for (String[] p : pairs) {
+            try {
+                RouteResult expected = service.search(p[0], p[1], NavigationService.STRATEGY_TIME, NavigationService.ENGINE_LINE_AWARE);
+                RouteResult actual = service.search(p[0], p[1], NavigationService.STRATEGY_TIME, NavigationService.ENGINE_OVERLAY);
+                if ((expected == null) != (actual == null) || (expected != null && expected.totalTime != actual.totalTime)) mismatches++;
+            } catch (RuntimeException e) {
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    private static long connectionScan(NavigationService service, String[][] pairs) {
+        long checksum = 0;
+        for (String[] p : pairs) {
+            RouteResult r = service.searchEarliestArrival(p[0], p[1], NavigationService.STRATEGY_TIME, 8 * 60);
+            if (r != null) checksum += r.arrivalTime;
+        }
+        return checksum;
+    }
+
+    private static long timetable(NavigationService service, String[][] pairs) {
+        long checksum = 0;
+        for (String[] p : pairs) {
+            List<RouteResult> journeys = service.searchDepartingAt(p[0], p[1], NavigationService.STRATEGY_TIME, 8 * 60);
+            if (!journeys.isEmpty()) checksum += journeys.get(journeys.size() - 1).arrivalTime;
+        }
+        return checksum;
+    }
+
+    private static long travelTimes(NavigationService service, String[][] pairs) {
+        long checksum = 0;
+        for (String[] p : pairs) {
+            int time = service.travelTime(p[0], p[1]);
+            if (time >= 0) checksum += time;
+        }
+        return checksum;
+    }
+
+    private static long query(NavigationService service, String[][] pairs, int engine) {
+        long checksum = 0;
+        for (String[] p : pairs) {
+            RouteResult r = service.search(p[0], p[1], NavigationService.STRATEGY_TIME, engine);
+            if (r != null) checksum += r.totalTime;
+        }
+        return checksum;
+    }
+
+    // 每次查询平均出堆的状态数 (双向搜索计两侧之和)
+    private static double settled(NavigationService service, String[][] pairs, int engine) {
+        long total = 0;
+        for (String[] p : pairs) {
+            service.search(p[0], p[1], NavigationService.STRATEGY_TIME, engine);
+            total += SearchWorkspace.local().settledCount;
+            if (engine == NavigationService.ENGINE_BIDIRECTIONAL || engine == NavigationService.ENGINE_CH) total += SearchWorkspace.backward().settledCount;
+        }
+        return (double) total / pairs.length;
+    }
+
+    static String[][] randomPairs(CompiledGraph g, int count, long seed) {
+        Random rnd = new Random(seed);
+        String[][] pairs = new String[count][];
+        for (int i = 0; i < count; i++) {
+            pairs[i] = new String[]{
+                g.stationNames[rnd.nextInt(g.stationCount())],
+                g.stationNames[rnd.nextInt(g.stationCount())]
+            };
+        }
+        return pairs;
+    }
+
+    /**
+     * 合成网格网络：每行一条横向地铁线、每列一条纵向地铁线，每隔三行/列叠加一条公交线。
+     * 坐标从 (10,10) 开始，避开表示"未设置"的 (0,0)
+     */
+    static TransportGraph syntheticGrid(int size) {
+        TransportGraph graph = new TransportGraph();
+        Random rnd = new Random(7);
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c + 1 < size; c++) {
+                int t = 2 + rnd.nextInt(3);
+                graph.addRouteWithCoords("H" + r + "号线", name(r, c), (c + 1) * 10, (r + 1) * 10,
+                        name(r, c + 1), (c + 2) * 10, (r + 1) * 10, t, "06:00", "23:00");
+                graph.addRouteWithCoords("V" + r + "号线", name(c, r), (r + 1) * 10, (c + 1) * 10,
+                        name(c + 1, r), (r + 1) * 10, (c + 2) * 10, t, "06:00", "23:00");
+                if (r % 3 == 1) {
+                    graph.addRouteWithCoords("公交H" + r + "路", name(r, c), (c + 1) * 10, (r + 1) * 10,
+                            name(r, c + 1), (c + 2) * 10, (r + 1) * 10, t + 2, "06:00", "22:00");
+                    graph.addRouteWithCoords("公交V" + r + "路", name(c, r), (r + 1) * 10, (c + 1) * 10,
+                            name(c + 1, r), (r + 1) * 10, (c + 2) * 10, t + 2, "06:00", "22:00");
+                }
+            }
+        }
+        return graph;
+    }
+
+    private static String name(int r, int c) { return "站" + r + "-" + c; }
+}
@@ -0,0 +1,111 @@
+package service;
+
+import java.util.Arrays;
+
+/**
+ * 可复用的最短路搜索工作区：距离/前驱数组 + 优先队列。
+ * 用"轮次戳"标记本次搜索访问过的元素，两次查询之间无需清空数组；
+ * 每个线程持有一份 (见 {@link #local()})，稳态查询不再产生临时对象。
+ */
+public final class SearchWorkspace {
+    public static final int INF = Integer.MAX_VALUE;
+
+    // 优先队列实现
+    public static final int QUEUE_BINARY_HEAP = 0; // 索引二叉堆
+    public static final int QUEUE_BUCKET = 1;      // 单调桶队列 (Dial)
+
+    // 新一轮搜索使用的队列实现 (对所有线程的工作区生效)；边权为分钟级小整数，默认用桶队列
+    private static volatile int queueType = QUEUE_BUCKET;
+
+    private static final ThreadLocal<SearchWorkspace> LOCAL = ThreadLocal.withInitial(SearchWorkspace::new);
+    private static final ThreadLocal<SearchWorkspace> BACKWARD = ThreadLocal.withInitial(SearchWorkspace::new);
+
+    // 以下数组仅在 reached(v) 为真时有效
+    public int[] dist = new int[0];
+    public int[] parent = new int[0];      // 前驱元素，-1 表示起点
+    public int[] parentEdge = new int[0];  // 到达所用的边，-1 表示起点
+
+    private int[] reachedStamp = new int[0];
+    private int[] settledStamp = new int[0];
+    private int epoch = 0;
+
+    // 本轮搜索出堆 (settle) 的元素个数，用于性能统计
+    public int settledCount;
+
+    public IntPriorityQueue heap = new IndexedMinHeap(16);
+    private int heapType = QUEUE_BINARY_HEAP;
+
+    // 回溯路径时使用的临时缓冲
+    private int[] pathBuffer = new int[16];
+
+    /** 当前线程的工作区 */
+    public static SearchWorkspace local() { return LOCAL.get(); }
+
+    /** 当前线程的第二份工作区，供双向搜索的反向一侧使用 */
+    public static SearchWorkspace backward() { return BACKWARD.get(); }
+
+    public static int getQueueType() { return queueType; }
+
+    /**
+     * 切换各引擎使用的优先队列，下一轮搜索 (reset) 起生效。
+     * 桶队列要求键单调不减 (Dijkstra / 一致估价的 A*)，适合分钟级小整数边权
+     */
+    public static void setQueueType(int type) {
+        if (type != QUEUE_BINARY_HEAP && type != QUEUE_BUCKET) throw new IllegalArgumentException("未知队列类型: " + type);
+        queueType = type;
+    }
+
+    /**
+     * 开始新一轮搜索：必要时扩容，并通过递增轮次使旧标记全部失效
+     */
+    public void reset(int n) {
+        if (reachedStamp.length < n) {
+            int cap = Math.max(n, reachedStamp.length + (reachedStamp.length >> 1));
+            dist = new int[cap];
+            parent = new int[cap];
+            parentEdge = new int[cap];
+            reachedStamp = new int[cap];
+            settledStamp = new int[cap];
+            epoch = 0;
+        }
+        int type = queueType;
+        if (type != heapType) {
+            heap = type == QUEUE_BUCKET ? new BucketQueue(n) : new IndexedMinHeap(n);
+            heapType = type;
+        }
+        heap.ensureCapacity(n);
+        heap.clear();
+        settledCount = 0;
+        if (++epoch == Integer.MAX_VALUE) {
+            // 轮次即将溢出：真正清零一次
+            Arrays.fill(reachedStamp, 0);
+            Arrays.fill(settledStamp, 0);
+            epoch = 1;
+        }
+    }
+
+    public boolean reached(int v) { return reachedStamp[v] == epoch; }
+
+    public int dist(int v) { return reachedStamp[v] == epoch ? dist[v] : INF; }
+
+    /** 记录 v 的新标号 */
+    public void label(int v, int d, int p, int e) {
+        reachedStamp[v] = epoch;
+        dist[v] = d;
+        parent[v] = p;
+        parentEdge[v] = e;
+    }
+
+    public boolean settled(int v) { return settledStamp[v] == epoch; }
+
+    public void settle(int v) {
+        settledStamp[v] = epoch;
+        settledCount++;
+    }
+
+    /** 长度至少为 n 的路径缓冲 (内容不保留) */
+    public int[] pathBuffer(int n) {
+        if (pathBuffer.length < n) pathBuffer = new int[Math.max(n, pathBuffer.length * 2)];
+        return pathBuffer;
+    }
+}
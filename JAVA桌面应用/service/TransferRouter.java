@@ -0,0 +1,181 @@
+package service;
+
+import model.*;
+import java.util.*;
+
+/**
+ * 换乘最少策略的专用引擎。
+ * 预处理：线路邻接图 (两条线路有公共站点即相邻) 以及由它逐线路 BFS 得到的"线路 -> 线路"最少换乘次数矩阵，
+ * 因此"两站之间是否存在不超过 k 次换乘的路线"只需查表。
+ * 查询：先由矩阵得到最少换乘次数 K，再在状态图上逐层搜索 —— 第 k 层只走乘车边、按耗时做 Dijkstra，
+ * 层内出堆的状态经换乘边成为下一层的起点；到终点还需换乘的次数 (查矩阵) 超过 K - k 的线路直接剪掉。
+ * 得到的路线换乘次数最少，同换乘次数中耗时最短。
+ */
+public final class TransferRouter {
+    // 矩阵中表示不可达
+    public static final int UNREACHABLE = Byte.MAX_VALUE;
+
+    private final int lineCount;
+    // 线路 -> 相邻线路 (有公共站点)
+    private final int[][] neighbors;
+    // 线路 a 到线路 b 的最少换乘次数，下标 a * lineCount + b
+    private final byte[] transfers;
+
+    private TransferRouter(int lineCount, int[][] neighbors, byte[] transfers) {
+        this.lineCount = lineCount;
+        this.neighbors = neighbors;
+        this.transfers = transfers;
+    }
+
+    /** 快照对应的引擎 (按快照缓存) */
+    public static TransferRouter of(CompiledGraph g) {
+        return g.derived(TransferRouter.class, TransferRouter::build);
+    }
+
+    static TransferRouter build(CompiledGraph g) {
+        int lines = g.lineCount();
+        // 站点 -> 经过的线路
+        List<List<Integer>> stationLines = new ArrayList<>(g.stationCount());
+        for (int v = 0; v < g.stationCount(); v++) stationLines.add(new ArrayList<>(2));
+        for (int l = 0; l < lines; l++) {
+            for (int v : g.lineStops[l]) {
+                List<Integer> at = stationLines.get(v);
+                if (at.isEmpty() || at.get(at.size() - 1) != l) at.add(l);
+            }
+        }
+
+        BitSet[] adjacent = new BitSet[lines];
+        for (int l = 0; l < lines; l++) adjacent[l] = new BitSet(lines);
+        for (List<Integer> at : stationLines) {
+            for (int a : at) for (int b : at) if (a != b) adjacent[a].set(b);
+        }
+        int[][] neighbors = new int[lines][];
+        for (int l = 0; l < lines; l++) neighbors[l] = adjacent[l].stream().toArray();
+
+        // 逐线路 BFS
+        byte[] transfers = new byte[lines * lines];
+        Arrays.fill(transfers, (byte) UNREACHABLE);
+        int[] queue = new int[lines];
+        for (int from = 0; from < lines; from++) {
+            int row = from * lines;
+            int head = 0, tail = 0;
+            transfers[row + from] = 0;
+            queue[tail++] = from;
+            while (head < tail) {
+                int l = queue[head++];
+                int next = transfers[row + l] + 1;
+                if (next >= UNREACHABLE) continue;
+                for (int m : neighbors[l]) {
+                    if (transfers[row + m] != UNREACHABLE) continue;
+                    transfers[row + m] = (byte) next;
+                    queue[tail++] = m;
+                }
+            }
+        }
+        return new TransferRouter(lines, neighbors, transfers);
+    }
+
+    // ========== 查表 ==========
+
+    /** 从线路 a 到线路 b 的最少换乘次数，不可达为 UNREACHABLE */
+    public int transfers(int fromLine, int toLine) {
+        return transfers[fromLine * lineCount + toLine];
+    }
+
+    /** 与线路有公共站点的线路 */
+    public int[] neighbors(int line) { return neighbors[line]; }
+
+    /**
+     * 两站之间的最少换乘次数 (按线路邻接关系)，同站为 0，不可达为 UNREACHABLE
+     */
+    public int minTransfers(LineStateGraph sg, int source, int target) {
+        if (source == target) return 0;
+        int best = UNREACHABLE;
+        for (int s = sg.stationStates[source]; s < sg.stationStates[source + 1]; s++) {
+            int row = sg.stateLine[s] * lineCount;
+            for (int t = sg.stationStates[target]; t < sg.stationStates[target + 1]; t++) {
+                best = Math.min(best, transfers[row + sg.stateLine[t]]);
+            }
+        }
+        return best;
+    }
+
+    /** 两站之间是否存在换乘不超过 k 次的路线 */
+    public boolean reachableWithin(LineStateGraph sg, int source, int target, int k) {
+        return minTransfers(sg, source, target) <= k;
+    }
+
+    // ========== 查询 ==========
+
+    /**
+     * 换乘最少、同换乘次数中耗时最短的路线
+     * @param w 以耗时为代价的边权表 (换乘边为换乘罚时，可含 EXCLUDED)
+     * @return 终点状态编号，不可达返回 -1；路径保存在 ws 的前驱数组中
+     */
+    public int search(LineStateGraph sg, int[] w, int source, int target, SearchWorkspace ws) {
+        int bound = minTransfers(sg, source, target);
+        if (bound == UNREACHABLE) return -1;
+
+        // 各线路到终点所需的最少换乘次数
+        int[] toTarget = new int[lineCount];
+        Arrays.fill(toTarget, UNREACHABLE);
+        for (int t = sg.stationStates[target]; t < sg.stationStates[target + 1]; t++) {
+            int b = sg.stateLine[t];
+            for (int l = 0; l < lineCount; l++) toTarget[l] = Math.min(toTarget[l], transfers[l * lineCount + b]);
+        }
+
+        // 矩阵只看线路是否相交，若状态图中的边方向等原因使按下界搜不到，则不限层数重搜一次
+        int end = layered(sg, w, source, target, toTarget, bound, ws);
+        if (end < 0) end = layered(sg, w, source, target, toTarget, UNREACHABLE - 1, ws);
+        return end;
+    }
+
+    private int layered(LineStateGraph sg, int[] w, int source, int target, int[] toTarget, int bound,
+                        SearchWorkspace ws) {
+        ws.reset(sg.stateCount());
+        IntPriorityQueue pq = ws.heap;
+        for (int s = sg.stationStates[source]; s < sg.stationStates[source + 1]; s++) {
+            if (toTarget[sg.stateLine[s]] > bound) continue;
+            ws.label(s, 0, -1, -1);
+            pq.push(s, 0);
+        }
+
+        // 本层出堆的状态，层结束后从它们出发换乘
+        int[] layer = new int[16];
+        int layerSize = 0;
+        for (int k = 0; k <= bound && !pq.isEmpty(); k++) {
+            layerSize = 0;
+            while (!pq.isEmpty()) {
+                int cost = pq.minKey();
+                int curr = pq.pop();
+                ws.settle(curr);
+                if (sg.stateStation[curr] == target) return curr;
+                if (layerSize == layer.length) layer = Arrays.copyOf(layer, layerSize * 2);
+                layer[layerSize++] = curr;
+
+                for (int e = sg.offsets[curr], stop = sg.offsets[curr + 1]; e < stop; e++) {
+                    if (sg.isTransfer(e) || w[e] == LineAwareRouter.EXCLUDED) continue;
+                    relax(sg, ws, curr, e, cost + w[e]);
+                }
+            }
+            // 下一层：换乘后仍来得及在 bound 次内到达终点的线路
+            int remaining = bound - k - 1;
+            for (int i = 0; i < layerSize; i++) {
+                int curr = layer[i];
+                for (int e = sg.offsets[curr], stop = sg.offsets[curr + 1]; e < stop; e++) {
+                    if (!sg.isTransfer(e) || w[e] == LineAwareRouter.EXCLUDED) continue;
+                    if (toTarget[sg.stateLine[sg.targets[e]]] > remaining) continue;
+                    relax(sg, ws, curr, e, ws.dist[curr] + w[e]);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static void relax(LineStateGraph sg, SearchWorkspace ws, int curr, int e, int newCost) {
+        int next = sg.targets[e];
+        if (ws.settled(next) || newCost >= ws.dist(next)) return;
+        ws.label(next, newCost, curr, e);
+        ws.heap.push(next, newCost);
+    }
+}
@@ -0,0 +1,183 @@
+package service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * 站点间出行时间矩阵 (分钟，不可达为 UNREACHABLE)，按行存储：第 i 行为从第 i 个站点出发到各站点的时间。
+ * 可放在堆内，也可放在内存映射文件中——后者不受堆大小限制，写好后可用 {@link #open(File)}
+ * 在之后直接查询，无需重新计算。映射按整行切成不超过 1GB 的段。
+ */
+public final class TravelTimeMatrix implements Closeable {
+    public static final int UNREACHABLE = -1;
+
+    private static final int MAGIC = 0x54544D31; // "TTM1"
+    private static final long SEGMENT_BYTES = 1L << 30;
+
+    private final List<String> stations;
+    private final Map<String, Integer> index;
+    public final int strategy;
+    // 生成矩阵时图快照的指纹
+    public final long fingerprint;
+
+    // 堆内存储 (仅堆内矩阵)
+    private final int[] values;
+    // 映射文件存储：每段 rowsPerSegment 行
+    private final MappedByteBuffer[] mapped;
+    private final IntBuffer[] segments;
+    private final int rowsPerSegment;
+    private final FileChannel channel;
+
+    private TravelTimeMatrix(List<String> stations, int strategy, long fingerprint, int[] values,
+                             MappedByteBuffer[] mapped, int rowsPerSegment, FileChannel channel) {
+        this.stations = Collections.unmodifiableList(new ArrayList<>(stations));
+        this.index = new HashMap<>(stations.size() * 2);
+        for (String s : stations) index.put(s, index.size());
+        this.strategy = strategy;
+        this.fingerprint = fingerprint;
+        this.values = values;
+        this.mapped = mapped;
+        this.segments = mapped == null ? null : new IntBuffer[mapped.length];
+        for (int k = 0; mapped != null && k < mapped.length; k++) segments[k] = mapped[k].asIntBuffer();
+        this.rowsPerSegment = rowsPerSegment;
+        this.channel = channel;
+    }
+
+    public int size() { return stations.size(); }
+    public List<String> stations() { return stations; }
+    public boolean isMapped() { return channel != null; }
+
+    /** 站名在矩阵中的序号，不存在时返回 -1 */
+    public int indexOf(String station) {
+        Integer i = index.get(station);
+        return i == null ? -1 : i;
+    }
+
+    public int get(int from, int to) {
+        int n = size();
+        if (values != null) return values[from * n + to];
+        return segments[from / rowsPerSegment].get((from % rowsPerSegment) * n + to);
+    }
+
+    /** 两站间的出行时间，站点不在矩阵中或不可达时返回 UNREACHABLE */
+    public int get(String from, String to) {
+        int i = indexOf(from), j = indexOf(to);
+        return i < 0 || j < 0 ? UNREACHABLE : get(i, j);
+    }
+
+    // 写入一整行 (各行可由不同线程并发写入)
+    void setRow(int from, int[] row) {
+        int n = size();
+        if (values != null) {
+            System.arraycopy(row, 0, values, from * n, n);
+        } else {
+            IntBuffer view = segments[from / rowsPerSegment].duplicate();
+            view.position((from % rowsPerSegment) * n);
+            view.put(row, 0, n);
+        }
+    }
+
+    // 把映射文件中已写入的内容刷到磁盘
+    void flush() {
+        if (mapped != null) for (MappedByteBuffer m : mapped) m.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+    }
+
+    // ========== 创建与打开 ==========
+
+    static TravelTimeMatrix inMemory(List<String> stations, int strategy, long fingerprint) {
+        long cells = (long) stations.size() * stations.size();
+        if (cells > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("矩阵过大 (" + stations.size() + " 站)，请输出到映射文件");
+        }
+        return new TravelTimeMatrix(stations, strategy, fingerprint, new int[(int) cells], null, 0, null);
+    }
+
+    /**
+     * 创建映射文件：文件头 (标识、指纹、策略、站名) 之后是按行存放的 int 矩阵
+     */
+    static TravelTimeMatrix create(File file, List<String> stations, int strategy, long fingerprint) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(header)) {
+            out.writeInt(MAGIC);
+            out.writeLong(fingerprint);
+            out.writeInt(strategy);
+            out.writeInt(stations.size());
+            for (String s : stations) {
+                byte[] name = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+            }
+        }
+        // 矩阵数据按 4 字节对齐
+        int dataOffset = (header.size() + 4 + 3) & ~3;
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer head = ByteBuffer.allocate(dataOffset);
+            head.putInt(dataOffset);
+            head.put(header.toByteArray());
+            head.rewind();
+            channel.write(head, 0);
+            return map(channel, FileChannel.MapMode.READ_WRITE, dataOffset, stations, strategy, fingerprint);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 以只读方式打开之前写出的矩阵文件
+     */
+    public static TravelTimeMatrix open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer first = ByteBuffer.allocate(4);
+            channel.read(first, 0);
+            first.flip();
+            int dataOffset = first.getInt();
+            if (dataOffset < 4 || dataOffset > channel.size()) throw new IOException("不是出行时间矩阵文件: " + file);
+            ByteBuffer head = ByteBuffer.allocate(dataOffset - 4);
+            channel.read(head, 4);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(head.array()));
+            if (in.readInt() != MAGIC) throw new IOException("不是出行时间矩阵文件: " + file);
+            long fingerprint = in.readLong();
+            int strategy = in.readInt();
+            int n = in.readInt();
+            List<String> stations = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                byte[] name = new byte[in.readInt()];
+                in.readFully(name);
+                stations.add(new String(name, StandardCharsets.UTF_8));
+            }
+            return map(channel, FileChannel.MapMode.READ_ONLY, dataOffset, stations, strategy, fingerprint);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static TravelTimeMatrix map(FileChannel channel, FileChannel.MapMode mode, long dataOffset,
+                                        List<String> stations, int strategy, long fingerprint) throws IOException {
+        int n = stations.size();
+        long rowBytes = Math.max(4L, 4L * n);
+        int rowsPerSegment = (int) Math.max(1, SEGMENT_BYTES / rowBytes);
+        int segmentCount = n == 0 ? 0 : (n + rowsPerSegment - 1) / rowsPerSegment;
+        MappedByteBuffer[] mapped = new MappedByteBuffer[segmentCount];
+        for (int k = 0; k < segmentCount; k++) {
+            int rows = Math.min(rowsPerSegment, n - k * rowsPerSegment);
+            mapped[k] = channel.map(mode, dataOffset + k * rowsPerSegment * rowBytes, rows * rowBytes);
+        }
+        return new TravelTimeMatrix(stations, strategy, fingerprint, null, mapped, rowsPerSegment, channel);
+    }
+}
@@ -41,7 +41,12 @@ public class AdminPanel extends JPanel {
         JButton btnRefresh = ModernUI.createButton("刷新地图", ModernUI.PRIMARY_COLOR);
         
         btnBack.addActionListener(e -> controller.exitAdminPanel());
-        btnSave.addActionListener(e -> { graph.saveToFile("routes.txt"); log("保存成功"); });
+        btnSave.addActionListener(e -> {
+            graph.saveToFile("routes.txt"); log("保存成功");
+            // 后台重建路标表 (选用 CH 引擎时还有收缩层次)，完成后回到界面线程记录日志
+            service.rebuildPreprocessing().whenComplete((v, ex) -> SwingUtilities.invokeLater(
+                    () -> log(ex == null ? "预处理数据已更新" : "预处理数据更新失败: " + ex.getMessage())));
+        });
         btnRefresh.addActionListener(e -> { mapPanel.updateGraph(graph); mapPanel.refreshBounds(); });
         topBar.add(btnBack); topBar.add(btnSave); topBar.add(btnRefresh);
 
@@ -2,11 +2,13 @@ package view;
 
 import controller.PublicTransportSystem;
 import model.TransportGraph;
+import service.IsochroneSearch;
 import service.NavigationService;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.util.List;
+import java.util.Map;
 
 public class UserPanel extends JPanel {
     private PublicTransportSystem controller;
@@ -14,6 +16,8 @@ public class UserPanel extends JPanel {
     private NavigationService service;
     private VisualMapPanel mapPanel;
     private List<String> allStationNames;
+    // 等时圈当前的增量搜索，拖动滑块时复用
+    private IsochroneSearch isochrone;
     
     public UserPanel(PublicTransportSystem controller, TransportGraph graph, NavigationService service) {
         this.controller = controller;
@@ -35,6 +39,7 @@ public class UserPanel extends JPanel {
         leftTabbedPane.addTab("智能导航", wrapInCard(createNavPanel()));
         leftTabbedPane.addTab("线路详情", wrapInCard(createLineQueryPanel()));
         leftTabbedPane.addTab("直连查询", wrapInCard(createDirectQueryPanel()));
+        leftTabbedPane.addTab("等时圈", wrapInCard(createIsochronePanel()));
         
         // 分割面板
         JSplitPane splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, leftTabbedPane, mapPanel);
@@ -46,7 +51,7 @@ public class UserPanel extends JPanel {
         topBar.setBackground(Color.WHITE);
         
         JButton btnBack = ModernUI.createButton("← 退出", ModernUI.TEXT_COLOR);
-        btnBack.addActionListener(e -> { mapPanel.clearHighlight(); controller.showLoginPanel(); });
+        btnBack.addActionListener(e -> { mapPanel.clearHighlight(); mapPanel.clearIsochrone(); controller.showLoginPanel(); });
         
         JButton btnReset = ModernUI.createButton("重置视角", ModernUI.PRIMARY_COLOR);
         btnReset.addActionListener(e -> mapPanel.resetView());
@@ -161,8 +166,10 @@ public class UserPanel extends JPanel {
             // 获取用户选择的策略索引 (0, 1, 2, 3)
             int selectedStrategy = strategyBox.getSelectedIndex();
             
-            // 执行搜索
+            // 执行搜索：导航方案由所选策略的精确搜索给出；
+            // (耗时, 换乘) 的 Pareto 方案只作为备选列出 (其换乘次数有上限)
             model.RouteResult result = service.search(s, t, selectedStrategy);
+            List<model.RouteResult> options = service.searchPareto(s, t, selectedStrategy);
             
             if (result != null) {
                 // 显示路书
@@ -170,6 +177,16 @@ public class UserPanel extends JPanel {
                 sb.append("★ 导航方案 [").append(result.strategyName).append("]\n");
                 sb.append("============================\n");
                 sb.append(formatVerticalPath(result));
+                boolean header = false;
+                for (model.RouteResult option : options) {
+                    if (option.totalTime == result.totalTime && option.transferCount == result.transferCount) continue;
+                    if (!header) {
+                        sb.append("\n其它方案:\n");
+                        header = true;
+                    }
+                    sb.append(String.format("  · [%s] %d分钟 | 换乘%d次\n",
+                            option.strategyName, option.totalTime, option.transferCount));
+                }
                 area.setText(sb.toString());
                 area.setCaretPosition(0);
                 
@@ -289,6 +306,81 @@ public class UserPanel extends JPanel {
         return panel;
     }
     
+    // ========== 4. 等时圈 ==========
+    private JPanel createIsochronePanel() {
+        JPanel panel = ModernUI.createCardPanel();
+        panel.setLayout(new BorderLayout(0, 10));
+        JPanel form = new JPanel(new GridLayout(4, 1, 0, 10)); form.setOpaque(false);
+        
+        JTextField originField = ModernUI.createTextField("新街口");
+        new StationAutoCompleter(originField, allStationNames);
+        String[] strategies = {"时间最短", "只坐公交", "只坐地铁"};
+        int[] strategyValues = {NavigationService.STRATEGY_TIME, NavigationService.STRATEGY_BUS_ONLY, NavigationService.STRATEGY_METRO_ONLY};
+        JComboBox<String> strategyBox = new JComboBox<>(strategies);
+        strategyBox.setFont(ModernUI.NORMAL_FONT);
+        strategyBox.setBackground(Color.WHITE);
+        
+        JSlider slider = new JSlider(5, 120, 30);
+        slider.setOpaque(false);
+        slider.setMajorTickSpacing(25);
+        slider.setMinorTickSpacing(5);
+        slider.setPaintTicks(true);
+        JLabel budgetLabel = new JLabel("时间预算: 30 分钟");
+        budgetLabel.setFont(ModernUI.NORMAL_FONT);
+        JPanel sliderP = new JPanel(new BorderLayout(0, 5)); sliderP.setOpaque(false);
+        sliderP.add(budgetLabel, BorderLayout.NORTH); sliderP.add(slider, BorderLayout.CENTER);
+        
+        form.add(createFieldGroup("起点", originField));
+        form.add(createFieldGroup("方式", strategyBox));
+        form.add(sliderP);
+        
+        JPanel btnP = new JPanel(new GridLayout(1, 2, 10, 0)); btnP.setOpaque(false);
+        JButton btnShow = ModernUI.createPrimaryButton("显示等时圈");
+        JButton btnClear = ModernUI.createDangerButton("清除");
+        btnP.add(btnShow); btnP.add(btnClear);
+        form.add(btnP);
+        
+        JTextArea area = new JTextArea();
+        area.setFont(new Font("Monospaced", Font.PLAIN, 13));
+        area.setBorder(BorderFactory.createEmptyBorder(10,10,10,10));
+        
+        Runnable refresh = () -> {
+            int minutes = slider.getValue();
+            budgetLabel.setText("时间预算: " + minutes + " 分钟");
+            String origin = originField.getText().trim();
+            int strategy = strategyValues[strategyBox.getSelectedIndex()];
+            // 起点、方式不变且图未修改时沿用上次的搜索前沿
+            if (isochrone == null || isochrone.strategy != strategy || !isochrone.isCurrent(graph)
+                    || !isochrone.snapshot.stationNames[isochrone.origin].equals(origin)) {
+                isochrone = service.isochroneSearch(origin, strategy);
+            }
+            if (isochrone == null) {
+                area.setText("站点不存在，请检查输入");
+                mapPanel.clearIsochrone();
+                return;
+            }
+            Map<String, Integer> times = isochrone.within(minutes);
+            int band = (minutes + 4) / 5; // 预算均分为 5 个色段
+            mapPanel.showIsochrone(times, band);
+            
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%d 分钟内可达 %d 个站点\n", minutes, times.size()));
+            sb.append("============================\n");
+            for (Map.Entry<String, Integer> entry : times.entrySet()) {
+                sb.append(String.format("%4d分  %s\n", entry.getValue(), entry.getKey()));
+            }
+            area.setText(sb.toString());
+            area.setCaretPosition(0);
+        };
+        btnShow.addActionListener(e -> refresh.run());
+        slider.addChangeListener(e -> { if (isochrone != null) refresh.run(); });
+        btnClear.addActionListener(e -> { isochrone = null; area.setText(""); mapPanel.clearIsochrone(); });
+        
+        panel.add(form, BorderLayout.NORTH);
+        panel.add(ModernUI.createModernScrollPane(area), BorderLayout.CENTER);
+        return panel;
+    }
+    
     private JPanel createFieldGroup(String label, JComponent comp) {
         JPanel p = new JPanel(new BorderLayout(0, 5)); p.setOpaque(false);
         JLabel lbl = new JLabel(label); lbl.setFont(ModernUI.NORMAL_FONT); lbl.setForeground(Color.GRAY);
@@ -3,6 +3,7 @@ package view;
 import model.TransportGraph;
 import model.Connection;
 import model.GeoCoordinate;
+import model.TransportMode;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
@@ -21,6 +22,10 @@ public class VisualMapPanel extends JPanel {
     private TransportGraph graph;
     private Map<String, Color> lineColors = new HashMap<>();
     private List<String> highlightedPath = null;
+
+    // 等时圈图层：站点 -> 到达时间 (分钟)，为 null 时不显示
+    private Map<String, Integer> isochroneTimes = null;
+    private int isochroneBand = 10;
     
     private Set<String> metroTransferStations = new HashSet<>();
     private Set<String> busTransferStations = new HashSet<>();
@@ -44,6 +49,12 @@ public class VisualMapPanel extends JPanel {
         new Color(41, 128, 185), new Color(127, 140, 141), new Color(255, 0, 128)
     };
 
+    // 等时圈时段色带：由近到远
+    private static final Color[] BAND_COLORS = {
+        new Color(39, 174, 96, 130), new Color(162, 217, 60, 130), new Color(241, 196, 15, 130),
+        new Color(230, 126, 34, 130), new Color(231, 76, 60, 130)
+    };
+
     public VisualMapPanel(TransportGraph graph) {
         this.graph = graph;
         this.setBackground(new Color(250, 252, 255));
@@ -95,12 +106,20 @@ public class VisualMapPanel extends JPanel {
         repaint();
     }
 
+    // 当前视图显示的交通方式掩码
+    private int viewModes() {
+        if (currentViewMode == VIEW_METRO) return TransportMode.RAIL;
+        if (currentViewMode == VIEW_BUS) return TransportMode.BUS;
+        return TransportMode.ALL;
+    }
+
     // ★★★ 核心排序逻辑：实现用户的具体排序需求
     private Comparator<String> lineComparator = new Comparator<String>() {
         @Override
         public int compare(String o1, String o2) {
-            boolean isBus1 = o1.contains("公交");
-            boolean isBus2 = o2.contains("公交");
+            int mode1 = graph.getLineMode(o1), mode2 = graph.getLineMode(o2);
+            boolean isBus1 = mode1 == TransportMode.BUS;
+            boolean isBus2 = mode2 == TransportMode.BUS;
 
             // 1. 公交排在最后
             if (!isBus1 && isBus2) return -1;
@@ -113,8 +132,8 @@ public class VisualMapPanel extends JPanel {
 
             // 3. 如果都是地铁
             // 判断是否是 S 线
-            boolean isS1 = o1.toUpperCase().startsWith("S");
-            boolean isS2 = o2.toUpperCase().startsWith("S");
+            boolean isS1 = mode1 == TransportMode.SUBURBAN;
+            boolean isS2 = mode2 == TransportMode.SUBURBAN;
 
             // 数字线排在 S 线前面
             if (!isS1 && isS2) return -1;
@@ -143,11 +162,9 @@ public class VisualMapPanel extends JPanel {
             return;
         }
 
+        int modes = viewModes();
         for (Map.Entry<String, List<String>> entry : graph.lineStationsMap.entrySet()) {
-            String lineName = entry.getKey();
-            boolean isBus = lineName.contains("公交");
-            if (currentViewMode == VIEW_METRO && isBus) continue;
-            if (currentViewMode == VIEW_BUS && !isBus) continue;
+            if ((graph.getLineMode(entry.getKey()) & modes) == 0) continue;
             visibleStations.addAll(entry.getValue());
         }
     }
@@ -164,7 +181,7 @@ public class VisualMapPanel extends JPanel {
         for (Map.Entry<String, List<String>> entry : graph.lineStationsMap.entrySet()) {
             String lineName = entry.getKey();
             List<String> stations = entry.getValue();
-            boolean isBus = lineName.contains("公交");
+            boolean isBus = graph.getLineMode(lineName) == TransportMode.BUS;
             
             Set<String> uniqueStations = new HashSet<>(stations);
             
@@ -203,9 +220,11 @@ public class VisualMapPanel extends JPanel {
     private boolean shouldDrawVertically(String station) {
         if (!visibleStations.contains(station)) return false;
         if (graph.lineStationsMap == null) return false;
-        for (List<String> stations : graph.lineStationsMap.values()) {
-            int idx = stations.indexOf(station);
-            if (idx == -1) continue;
+        // 只看经过该站的线路
+        for (String line : graph.index.linesAt(station)) {
+            List<String> stations = graph.lineStationsMap.get(line);
+            int idx = graph.index.position(station, line);
+            if (stations == null || idx == -1) continue;
             GeoCoordinate curr = graph.stationCoords.get(station);
             GeoCoordinate prev = (idx > 0) ? graph.stationCoords.get(stations.get(idx - 1)) : null;
             GeoCoordinate next = (idx < stations.size() - 1) ? graph.stationCoords.get(stations.get(idx + 1)) : null;
@@ -230,6 +249,7 @@ public class VisualMapPanel extends JPanel {
         drawGrid(g2);
 
         // 1. 绘制线路
+        int modes = viewModes();
         for (String station : graph.adjList.keySet()) {
             if (!visibleStations.contains(station)) continue;
             GeoCoordinate c1 = graph.stationCoords.get(station);
@@ -237,22 +257,26 @@ public class VisualMapPanel extends JPanel {
             Point p1 = coordToScreen(c1);
 
             for (Connection conn : graph.adjList.get(station)) {
-                if (!visibleStations.contains(conn.toStation)) continue;
+                // 每条双向连接只画一次
+                if (conn.from > conn.to) continue;
+                int mode = graph.index.mode(conn.line);
+                if ((mode & modes) == 0) continue;
+                String toStation = graph.stationName(conn.to);
+                if (!visibleStations.contains(toStation)) continue;
+                String lineName = graph.lineName(conn.line);
                 
-                boolean isBusLine = conn.lineName.contains("公交");
-                if (currentViewMode == VIEW_METRO && isBusLine) continue;
-                if (currentViewMode == VIEW_BUS && !isBusLine) continue;
+                boolean isBusLine = mode == TransportMode.BUS;
                 
-                GeoCoordinate c2 = graph.stationCoords.get(conn.toStation);
-                if (c2 == null || station.compareTo(conn.toStation) > 0) continue;
+                GeoCoordinate c2 = graph.stationCoords.get(toStation);
+                if (c2 == null) continue;
                 Point p2 = coordToScreen(c2);
 
-                boolean isHigh = highlightedPath != null && highlightedPath.contains(station) && highlightedPath.contains(conn.toStation);
+                boolean isHigh = highlightedPath != null && highlightedPath.contains(station) && highlightedPath.contains(toStation);
                 float baseWidth = isBusLine ? 1.5f : 3.5f;
                 float strokeWidth = baseWidth * (float)Math.sqrt(scale);
                 if(strokeWidth < 1f) strokeWidth = 1f;
                 
-                Color baseColor = lineColors.getOrDefault(conn.lineName, Color.GRAY);
+                Color baseColor = lineColors.getOrDefault(lineName, Color.GRAY);
                 
                 if (isHigh) {
                     g2.setStroke(new BasicStroke(strokeWidth * 2.5f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
@@ -297,6 +321,14 @@ public class VisualMapPanel extends JPanel {
             int size = (int)(baseSize * Math.sqrt(scale)); 
             if (size < 5) size = 5; if (size > 22) size = 22;
             
+            // 等时圈：按到达时段在站点下方铺一圈底色
+            Integer arrival = isochroneTimes == null ? null : isochroneTimes.get(station);
+            if (arrival != null) {
+                int halo = size + 12;
+                g2.setColor(bandColor(arrival));
+                g2.fillOval(p.x - halo/2, p.y - halo/2, halo, halo);
+            }
+            
             if (isHigh) {
                 g2.setColor(new Color(255, 0, 0, 80));
                 g2.fillOval(p.x - size - 4, p.y - size - 4, size*2 + 8, size*2 + 8);
@@ -363,6 +395,40 @@ public class VisualMapPanel extends JPanel {
         }
         
         drawLegend(g2);
+        if (isochroneTimes != null) drawIsochroneLegend(g2);
+    }
+    
+    private Color bandColor(int minutes) {
+        return BAND_COLORS[Math.min(minutes / isochroneBand, BAND_COLORS.length - 1)];
+    }
+    
+    // 左下角的时段色带图例
+    private void drawIsochroneLegend(Graphics2D g2) {
+        int rowH = 20, padding = 12;
+        int panelW = 150, panelH = padding * 2 + 20 + BAND_COLORS.length * rowH;
+        int x = 20, y = getHeight() - panelH - 20;
+        
+        g2.setColor(new Color(255, 255, 255, 230));
+        g2.fillRoundRect(x, y, panelW, panelH, 12, 12);
+        g2.setColor(new Color(200, 200, 200));
+        g2.drawRoundRect(x, y, panelW, panelH, 12, 12);
+        
+        int curX = x + padding, curY = y + padding + 12;
+        g2.setFont(new Font("微软雅黑", Font.BOLD, 13));
+        g2.setColor(Color.DARK_GRAY);
+        g2.drawString("等时圈 (" + isochroneTimes.size() + "站)", curX, curY);
+        
+        g2.setFont(new Font("微软雅黑", Font.PLAIN, 12));
+        for (int i = 0; i < BAND_COLORS.length; i++) {
+            curY += rowH;
+            g2.setColor(BAND_COLORS[i]);
+            g2.fillOval(curX, curY - 10, 12, 12);
+            g2.setColor(Color.DARK_GRAY);
+            String range = (i == BAND_COLORS.length - 1)
+                    ? String.format("≥ %d 分钟", i * isochroneBand)
+                    : String.format("%d - %d 分钟", i * isochroneBand, (i + 1) * isochroneBand);
+            g2.drawString(range, curX + 20, curY);
+        }
     }
     
     private void drawGrid(Graphics2D g2) {
@@ -376,10 +442,9 @@ public class VisualMapPanel extends JPanel {
 
     private void drawLegend(Graphics2D g2) {
         List<String> allLines = new ArrayList<>();
+        int modes = viewModes();
         for (String line : lineColors.keySet()) {
-            boolean isBus = line.contains("公交");
-            if (currentViewMode == VIEW_METRO && isBus) continue;
-            if (currentViewMode == VIEW_BUS && !isBus) continue;
+            if ((graph.getLineMode(line) & modes) == 0) continue;
             allLines.add(line);
         }
         
@@ -490,6 +555,16 @@ public class VisualMapPanel extends JPanel {
     
     public void highlightPath(List<String> path) { this.highlightedPath = path; repaint(); }
     public void clearHighlight() { this.highlightedPath = null; repaint(); }
+    
+    /**
+     * 显示等时圈图层：times 为站点 -> 到达时间，每 bandMinutes 分钟一个色段
+     */
+    public void showIsochrone(Map<String, Integer> times, int bandMinutes) {
+        this.isochroneTimes = times;
+        this.isochroneBand = Math.max(1, bandMinutes);
+        repaint();
+    }
+    public void clearIsochrone() { this.isochroneTimes = null; repaint(); }
     public void resetView() { scale = 1.0; offsetX = 0; offsetY = 0; repaint(); }
     
     public void updateGraph(TransportGraph g) { 